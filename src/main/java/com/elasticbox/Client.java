@@ -390,7 +390,7 @@ public class Client implements ApiClient {
 
         JSONArray instances = new JSONArray();
         for (int start = 0; start < instanceIDs.size(); ) {
-            int end = Math.min(800, instanceIDs.size());
+            int end = Math.min(start + 800, instanceIDs.size());
             StringBuilder ids = new StringBuilder();
             for (int i = start; i < end; i++) {
                 ids.append(instanceIDs.get(i)).append(',');
@@ -798,6 +798,14 @@ public class Client implements ApiClient {
                 Collections.singleton(InstanceOperation.DEPLOY), instance.getString("updated"));
     }
 
+    /**
+     * Creates a monitor for the deployment of an existing instance, for example to keep monitoring it after a restart.
+     * The deployment is done as soon as the instance has been deployed.
+     */
+    public IProgressMonitor getDeployMonitor(String instanceUrl) {
+        return new InstanceProgressMonitor(instanceUrl, Collections.singleton(InstanceOperation.DEPLOY), "");
+    }
+
     public IProgressMonitor reconfigure(String instanceId, JSONArray variables) throws IOException {
         JSONObject instance = doOperation(instanceId, InstanceOperation.RECONFIGURE, variables);
         return new InstanceProgressMonitor(getInstanceUrl(instanceId),
@@ -13,6 +13,7 @@
 package com.elasticbox.jenkins;
 
 import com.elasticbox.Client;
+import com.elasticbox.Constants;
 
 import hudson.model.Describable;
 import hudson.model.Descriptor;
@@ -23,6 +24,9 @@ import hudson.util.FormValidation;
 
 import jenkins.model.Jenkins;
 
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.QueryParameter;
 
@@ -30,12 +34,19 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public abstract class AbstractSlaveConfiguration implements Describable<AbstractSlaveConfiguration> {
     private static final Logger LOGGER = Logger.getLogger(AbstractSlaveConfiguration.class.getName());
 
+    // slaves created for this configuration within this period share the same resolved deployment metadata
+    private static final long DEPLOYMENT_METADATA_TTL = Long.getLong(
+            AbstractSlaveConfiguration.class.getName() + ".deploymentMetadataTtl", 60 * 1000);
+
     private String id;
     private final String workspace;
     protected String boxDeploymentType;
@@ -61,6 +72,8 @@ public abstract class AbstractSlaveConfiguration implements Describable<Abstract
     private transient Set<LabelAtom> labelSet;
     private transient String resolvedBoxVersion;
     private transient String resolvedDeploymentPolicy;
+    private transient Future<DeploymentMetadata> deploymentMetadata;
+    private transient long deploymentMetadataTime;
 
     public AbstractSlaveConfiguration(String id, String workspace, String box, String boxVersion, String profile,
             String claims, String provider, String location, int minInstances,
@@ -231,6 +244,90 @@ public abstract class AbstractSlaveConfiguration implements Describable<Abstract
         return resolvedDeploymentPolicy = DescriptorHelper.resolveDeploymentPolicy(client, workspace, profile, claims);
     }
 
+    /**
+     * Resolves the box version, deployment policy and remote FS of the slaves of this configuration in the background.
+     * The result is shared by all the slaves created for this configuration during a short period of time, so a burst
+     * of new slaves resolves it only once.
+     *
+     * @param client the client of the ElasticBox cloud of the slaves
+     * @return the future deployment metadata
+     */
+    synchronized Future<DeploymentMetadata> resolveDeploymentMetadata(final Client client) {
+        long now = System.currentTimeMillis();
+        if (deploymentMetadata != null && now - deploymentMetadataTime < DEPLOYMENT_METADATA_TTL
+                && !isFailed(deploymentMetadata)) {
+
+            return deploymentMetadata;
+        }
+
+        deploymentMetadataTime = now;
+        deploymentMetadata = ElasticBoxExecutor.threadPool.submit(new Callable<DeploymentMetadata>() {
+            public DeploymentMetadata call() throws IOException {
+                String version = resolveBoxVersion(client);
+                String policy = resolveDeploymentPolicy(client);
+                String fs = StringUtils.isBlank(remoteFs) ? getRemoteFs(client, policy) : remoteFs;
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(MessageFormat.format("Resolved box version {0} and deployment policy {1} for slave "
+                            + "configuration {2}", version, policy, getId()));
+                }
+                return new DeploymentMetadata(version, policy, fs);
+            }
+        });
+        return deploymentMetadata;
+    }
+
+    private static boolean isFailed(Future<DeploymentMetadata> future) {
+        if (!future.isDone()) {
+            return false;
+        }
+        try {
+            future.get();
+            return false;
+        } catch (InterruptedException | ExecutionException ex) {
+            return true;
+        }
+    }
+
+    private static String getRemoteFs(Client client, String profileId) throws IOException {
+        JSONObject profile = client.getBox(profileId);
+        JSONArray claims = profile.getJSONArray("claims");
+        if (claims.contains(Constants.LINUX_CLAIM)) {
+            return "/var/jenkins";
+        } else if (claims.contains(Constants.WINDOWS_CLAIM)) {
+            return "C:\\Jenkins";
+        } else {
+            throw new IOException(
+                    MessageFormat.format(
+                            "Cannot create slave since the selected deployment policy ''{0}'' supports"
+                                    + " neither Linux nor Windows.",
+                            profile.getString("name")));
+        }
+    }
+
+    static final class DeploymentMetadata {
+        private final String boxVersion;
+        private final String deploymentPolicy;
+        private final String remoteFs;
+
+        DeploymentMetadata(String boxVersion, String deploymentPolicy, String remoteFs) {
+            this.boxVersion = boxVersion;
+            this.deploymentPolicy = deploymentPolicy;
+            this.remoteFs = remoteFs;
+        }
+
+        String getBoxVersion() {
+            return boxVersion;
+        }
+
+        String getDeploymentPolicy() {
+            return deploymentPolicy;
+        }
+
+        String getRemoteFs() {
+            return remoteFs;
+        }
+    }
+
     public abstract static class AbstractSlaveConfigurationDescriptor extends Descriptor<AbstractSlaveConfiguration> {
 
         public FormValidation doCheckMaxBuildsText(@QueryParameter String value) {
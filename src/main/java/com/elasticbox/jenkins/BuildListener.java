@@ -15,6 +15,8 @@ package com.elasticbox.jenkins;
 import hudson.Extension;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.Executor;
 import hudson.model.Node;
 import hudson.model.TaskListener;
 import hudson.model.listeners.RunListener;
@@ -26,6 +28,17 @@ import java.util.logging.Logger;
 public class BuildListener extends RunListener<AbstractBuild> {
     private static final Logger LOGGER = Logger.getLogger(BuildListener.class.getName());
 
+    @Override
+    public void onStarted(AbstractBuild build, TaskListener listener) {
+        // the build is not bound to its node yet, but it is started by the executor thread of the node
+        Executor executor = Executor.currentExecutor();
+        Computer computer = executor != null ? executor.getOwner() : null;
+        Node node = computer != null ? computer.getNode() : null;
+        if (node instanceof ElasticBoxSlave) {
+            ((ElasticBoxSlave) node).setBuildStarted();
+        }
+    }
+
     @Override
     public void onCompleted(AbstractBuild build, TaskListener listener) {
         try {
@@ -17,6 +17,7 @@ import com.elasticbox.Client;
 import com.elasticbox.ClientException;
 import com.elasticbox.Constants;
 import com.elasticbox.jenkins.model.services.deployment.DeploymentType;
+import com.elasticbox.jenkins.util.BoxCache;
 import com.elasticbox.jenkins.util.ClientCache;
 import com.elasticbox.jenkins.util.CompositeObjectFilter;
 import com.elasticbox.jenkins.util.JsonUtil;
@@ -273,7 +274,7 @@ public class DescriptorHelper {
                 if (LATEST_BOX_VERSION.equals(boxVersion)) {
                     boxVersion = client.getLatestBoxVersion(workspace, boxId);
                 }
-                JSONArray boxStack = new BoxStack(boxVersion, client.getBoxStack(boxVersion), client).toJsonArray();
+                JSONArray boxStack = BoxCache.getResolvedBoxStack(client, boxVersion);
                 for (Object boxJson : boxStack) {
                     for (Object variable : ((JSONObject) boxJson).getJSONArray("variables")) {
                         JSONObject variableJson = (JSONObject) variable;
@@ -499,7 +500,7 @@ public class DescriptorHelper {
 
         JSONArray stack;
         try {
-            stack = client.getBoxStack(box);
+            stack = BoxCache.getBoxStack(client, box);
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
             return FormValidation.error("Error fetching box stack of box {0}", box);
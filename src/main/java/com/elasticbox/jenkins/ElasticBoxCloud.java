@@ -17,8 +17,8 @@ import antlr.ANTLRException;
 import com.elasticbox.Client;
 import com.elasticbox.IProgressMonitor;
 import com.elasticbox.jenkins.migration.AbstractConverter;
+import com.elasticbox.jenkins.migration.DeferredMigrations;
 import com.elasticbox.jenkins.migration.Version;
-import com.elasticbox.jenkins.model.services.deployment.DeployBoxOrderServiceImpl;
 import com.elasticbox.jenkins.model.services.deployment.DeploymentType;
 import com.elasticbox.jenkins.model.services.error.ServiceException;
 import com.elasticbox.jenkins.util.ClientCache;
@@ -271,85 +271,87 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
 
         List<NodeProvisioner.PlannedNode> plannedNodes = new ArrayList<NodeProvisioner.PlannedNode>();
         while (excessWorkload > 0) {
-            try {
-                ElasticBoxSlave newSlave;
-                if (isLabelForReusableSlave(label)) {
-                    ProjectSlaveConfiguration slaveConfig = ProjectSlaveConfiguration.find(label);
-                    if (slaveConfig != null) {
-                        SlaveInstance.InstanceCounter instanceCounter =
-                                new SlaveInstance.InstanceCounter(activeInstances);
-
-                        if (instanceCounter.count(slaveConfig) >= slaveConfig.getMaxInstances()) {
-                            LOGGER.log(Level.WARNING,
-                                    MessageFormat.format(
-                                            "Cannot provision slave for label {0} because the maxinum number of "
-                                                    + "ElasticBox instances of the slave configuration "
-                                                    + "has been reached.",
-                                            label.getName()));
-                            break;
-                        }
-                        newSlave = new ElasticBoxSlave(slaveConfig, false);
-                    } else {
-                        LOGGER.log(Level.WARNING, MessageFormat.format("Cannot find any slave configuration for label"
-                                + " ''{0}''. No slave will be provisioned.", label.getName()));
+            final AbstractSlaveConfiguration slaveConfig;
+            if (isLabelForReusableSlave(label)) {
+                ProjectSlaveConfiguration projectSlaveConfig = ProjectSlaveConfiguration.find(label);
+                if (projectSlaveConfig != null) {
+                    SlaveInstance.InstanceCounter instanceCounter =
+                            new SlaveInstance.InstanceCounter(activeInstances);
+
+                    if (instanceCounter.count(projectSlaveConfig) >= projectSlaveConfig.getMaxInstances()) {
+                        LOGGER.log(Level.WARNING,
+                                MessageFormat.format(
+                                        "Cannot provision slave for label {0} because the maxinum number of "
+                                                + "ElasticBox instances of the slave configuration "
+                                                + "has been reached.",
+                                        label.getName()));
                         break;
                     }
+                    slaveConfig = projectSlaveConfig;
                 } else {
-                    SlaveConfiguration slaveConfig = findSlaveConfiguration(label, activeInstances);
-                    if (slaveConfig == null) {
-                        LOGGER.log(Level.WARNING, MessageFormat.format("Cannot provision slave for label \"{0}\" "
-                                + "because the maxinum number of ElasticBox instances of all matching slave "
-                                + "configurations has been reached.",
-                                label.getName()));
-
-                        break;
-                    }
-
-                    newSlave = new ElasticBoxSlave(slaveConfig, this);
+                    LOGGER.log(Level.WARNING, MessageFormat.format("Cannot find any slave configuration for label"
+                            + " ''{0}''. No slave will be provisioned.", label.getName()));
+                    break;
                 }
-                final ElasticBoxSlave slave = newSlave;
-
-                if (LOGGER.isLoggable(Level.FINE)) {
-                    LOGGER.fine("doProvision(): provisioning a EB Slave node - " + slave);
+            } else {
+                slaveConfig = findSlaveConfiguration(label, activeInstances);
+                if (slaveConfig == null) {
+                    LOGGER.log(Level.WARNING, MessageFormat.format("Cannot provision slave for label \"{0}\" "
+                            + "because the maxinum number of ElasticBox instances of all matching slave "
+                            + "configurations has been reached.",
+                            label.getName()));
+
+                    break;
                 }
+            }
 
-                plannedNodes.add(new NodeProvisioner.PlannedNode(slave.getDisplayName(),
-                        new FutureWrapper<Node>(Computer.threadPoolForRemoting.submit(new Callable<Node>() {
-                            public Node call() throws Exception {
-                                Jenkins.getInstance().addNode(slave);
-                                IProgressMonitor monitor = ElasticBoxSlaveHandler.submit(slave);
-                                monitor.waitForDone(slave.getLaunchTimeout());
-                                if (slave.getComputer() != null && slave.getComputer().isOnline()) {
-                                    return slave;
-                                } else {
-                                    LOGGER.log(
-                                            Level.WARNING,
-                                            MessageFormat.format("The slave {0} did not come online after {1} minutes."
-                                                    + " It will be terminated and removed.",
-                                                    slave.getDisplayName(),
-                                                    slave.getLaunchTimeout()));
-
-                                    slave.markForTermination();
-                                    throw new Exception(
-                                            MessageFormat.format(
-                                                    "Cannot deploy slave {0}. See the system log for more details.",
-                                                    slave.getDisplayName()));
-                                }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("doProvision(): provisioning a EB Slave node of slave configuration "
+                        + slaveConfig.getDescription());
+            }
+
+            // the slave is created in the background, creating it can wait for the ElasticBox API to resolve its
+            // remote FS
+            plannedNodes.add(new NodeProvisioner.PlannedNode(slaveConfig.getDescription(),
+                    new FutureWrapper<Node>(Computer.threadPoolForRemoting.submit(new Callable<Node>() {
+                        public Node call() throws Exception {
+                            ElasticBoxSlave slave = createSlave(slaveConfig);
+                            Jenkins.getInstance().addNode(slave);
+                            IProgressMonitor monitor = ElasticBoxSlaveHandler.submit(slave);
+                            monitor.waitForDone(slave.getLaunchTimeout());
+                            if (slave.getComputer() != null && slave.getComputer().isOnline()) {
+                                return slave;
+                            } else {
+                                LOGGER.log(
+                                        Level.WARNING,
+                                        MessageFormat.format("The slave {0} did not come online after {1} minutes."
+                                                + " It will be terminated and removed.",
+                                                slave.getDisplayName(),
+                                                slave.getLaunchTimeout()));
+
+                                slave.markForTermination();
+                                throw new Exception(
+                                        MessageFormat.format(
+                                                "Cannot deploy slave {0}. See the system log for more details.",
+                                                slave.getDisplayName()));
                             }
-                        })), 1));
+                        }
+                    })), 1));
 
-                excessWorkload -= slave.getNumExecutors();
-            } catch (Descriptor.FormException ex) {
-                LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                break;
-            } catch (IOException ex) {
-                LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                break;
-            }
+            excessWorkload -= slaveConfig.getExecutors();
         }
         return plannedNodes;
     }
 
+    private ElasticBoxSlave createSlave(AbstractSlaveConfiguration slaveConfig)
+            throws Descriptor.FormException, IOException {
+
+        if (slaveConfig instanceof ProjectSlaveConfiguration) {
+            return new ElasticBoxSlave((ProjectSlaveConfiguration) slaveConfig, false);
+        }
+        return new ElasticBoxSlave((SlaveConfiguration) slaveConfig, this);
+    }
+
     @Override
     public boolean canProvision(Label label) {
         try {
@@ -756,26 +758,45 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
 
     }
 
-    private static class DeploymentTypeMigrator extends AbstractConverter.Migrator<ElasticBoxCloud> {
+    private static class DeploymentTypeMigrator extends AbstractConverter.DeferredMigrator<ElasticBoxCloud> {
 
         public DeploymentTypeMigrator() {
             super(Version._4_0_3);
         }
 
         @Override
-        protected void migrate(ElasticBoxCloud cloud, Version olderVersion) {
+        protected boolean isMigrationNeeded(ElasticBoxCloud cloud) {
+            for (SlaveConfiguration slaveConfiguration : cloud.getSlaveConfigurations()) {
+                if (StringUtils.isBlank(slaveConfiguration.getBoxDeploymentType())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected void migrateDeferred(ElasticBoxCloud cloud, Version olderVersion) throws IOException {
             final List<? extends SlaveConfiguration> slaveConfigurations = cloud.getSlaveConfigurations();
+            boolean migrated = false;
             for (SlaveConfiguration slaveConfiguration : slaveConfigurations) {
                 if (StringUtils.isBlank(slaveConfiguration.getBoxDeploymentType())) {
 
                     final Client client = createClient(cloud.endpointUrl, cloud.token);
+                    if (client == null) {
+                        throw new IOException("Cannot connect to ElasticBox cloud " + cloud.getDisplayName());
+                    }
 
                     final DeploymentType deploymentType =
-                            new DeployBoxOrderServiceImpl(client).deploymentType(slaveConfiguration.getBox());
+                            DeferredMigrations.getBoxDeploymentType(client, slaveConfiguration.getBox());
 
                     slaveConfiguration.boxDeploymentType = deploymentType.getValue();
+                    migrated = true;
                 }
             }
+
+            if (migrated) {
+                Jenkins.getInstance().save();
+            }
         }
 
         private Client createClient(String endpointUrl, String token) {
@@ -12,7 +12,6 @@
 
 package com.elasticbox.jenkins;
 
-import com.elasticbox.Client;
 import com.elasticbox.ClientException;
 
 import hudson.Extension;
@@ -52,7 +51,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -224,41 +222,8 @@ public final class ElasticBoxComputer extends SlaveComputer {
             }
 
             if (retry) {
-                Computer.threadPoolForRemoting.submit(new Runnable() {
-
-                    public void run() {
-                        for (int i = 0; i < 3; i++) {
-                            try {
-                                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
-                                slave.terminate();
-                                return;
-                            } catch (IOException ex) {
-                                LOGGER.log(
-                                        Level.SEVERE,
-                                        MessageFormat.format(
-                                                "Error termininating ElasticBox slave {0}",
-                                                slave.getDisplayName()),
-                                        ex);
-
-                            } catch (InterruptedException ex) {
-                                Logger.getLogger(ElasticBoxSlave.class.getName()).log(Level.SEVERE,ex.getMessage(), ex);
-                            }
-                        }
-                        String instanceLocation = slave.getInstanceUrl();
-                        try {
-                            instanceLocation = Client.getPageUrl(slave.getCloud().getEndpointUrl(), instanceLocation);
-                        } catch (IOException ex) {
-                            Logger.getLogger(ElasticBoxSlave.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
-                        }
-                        LOGGER.log(
-                                Level.SEVERE,
-                                MessageFormat.format(
-                                        "Cannot termininate ElasticBox slave {0} after several retries. "
-                                                + "Please terminate it manually at {1}",
-                                        slave.getDisplayName(),
-                                        instanceLocation));
-                    }
-                });
+                // the termination pipeline of the cloud retries with backoff without holding a remoting thread
+                TerminationPipeline.submit(slave);
             }
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
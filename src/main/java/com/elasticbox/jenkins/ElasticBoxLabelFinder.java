@@ -44,7 +44,7 @@ public class ElasticBoxLabelFinder extends LabelFinder {
             AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
             if (slaveConfig != null) {
                 if (slave.isSingleUse()) {
-                    if (slave.getComputer() != null && slave.getComputer().getBuilds().isEmpty()) {
+                    if (slave.getComputer() != null && !slave.isBuildStarted()) {
                         return Collections.singleton(getLabel(slaveConfig, true));
                     }
                 } else if (StringUtils.isBlank(slave.getLabelString())) {
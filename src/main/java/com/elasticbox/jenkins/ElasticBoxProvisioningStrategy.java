@@ -0,0 +1,141 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import hudson.Extension;
+import hudson.model.Label;
+import hudson.model.LoadStatistics;
+import hudson.model.Queue;
+import hudson.slaves.Cloud;
+import hudson.slaves.NodeProvisioner;
+
+import jenkins.model.Jenkins;
+
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Provisions ElasticBox slaves as soon as buildable items are waiting for an ElasticBox label, without waiting for
+ * the load statistics of the default strategy to build up. It is disabled unless the system property
+ * <code>elasticbox.jenkins.speculativeProvisioning</code> is set to true.
+ */
+@Extension(ordinal = 100)
+public class ElasticBoxProvisioningStrategy extends NodeProvisioner.Strategy {
+    private static final Logger LOGGER = Logger.getLogger(ElasticBoxProvisioningStrategy.class.getName());
+
+    static final boolean ENABLED = Boolean.getBoolean("elasticbox.jenkins.speculativeProvisioning");
+
+    // time when each queue item became buildable, and time when a slave was speculatively provisioned for it
+    private static final Map<Long, Long> buildableSince = new ConcurrentHashMap<Long, Long>();
+    private static final Map<Long, Long> provisionedAt = new ConcurrentHashMap<Long, Long>();
+
+    @Override
+    public NodeProvisioner.StrategyDecision apply(NodeProvisioner.StrategyState state) {
+        Label label = state.getLabel();
+        if (!ENABLED || label == null || !isElasticBoxLabel(label)) {
+            return NodeProvisioner.StrategyDecision.CONSULT_REMAINING_STRATEGIES;
+        }
+
+        // idle and connecting slaves plus the slaves planned by any strategy are already able to take the items
+        LoadStatistics.LoadStatisticsSnapshot snapshot = state.getSnapshot();
+        int availableCapacity = snapshot.getAvailableExecutors() + snapshot.getConnectingExecutors()
+                + state.getPlannedCapacitySnapshot() + state.getAdditionalPlannedCapacity();
+        int currentDemand = snapshot.getQueueLength();
+
+        if (availableCapacity < currentDemand) {
+            for (Cloud cloud : Jenkins.getInstance().clouds) {
+                if (availableCapacity >= currentDemand) {
+                    break;
+                }
+                if (cloud instanceof ElasticBoxCloud && cloud.canProvision(label)) {
+                    Collection<NodeProvisioner.PlannedNode> plannedNodes =
+                            cloud.provision(label, currentDemand - availableCapacity);
+
+                    state.recordPendingLaunches(plannedNodes);
+                    for (NodeProvisioner.PlannedNode plannedNode : plannedNodes) {
+                        availableCapacity += plannedNode.numExecutors;
+                    }
+                    if (!plannedNodes.isEmpty()) {
+                        recordProvisioning(label);
+                    }
+                }
+            }
+        }
+
+        return availableCapacity >= currentDemand
+                ? NodeProvisioner.StrategyDecision.PROVISIONING_COMPLETED
+                : NodeProvisioner.StrategyDecision.CONSULT_REMAINING_STRATEGIES;
+    }
+
+    static boolean isElasticBoxLabel(Label label) {
+        for (Cloud cloud : Jenkins.getInstance().clouds) {
+            if (cloud instanceof ElasticBoxCloud && cloud.canProvision(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void onEnterBuildable(Queue.BuildableItem item) {
+        Label label = item.getAssignedLabel();
+        if (!ENABLED || label == null || !isElasticBoxLabel(label)) {
+            return;
+        }
+
+        buildableSince.put(item.getId(), System.currentTimeMillis());
+        label.nodeProvisioner.suggestReviewNow();
+    }
+
+    static void onLeft(Queue.LeftItem item) {
+        Long since = buildableSince.remove(item.getId());
+        Long provisioned = provisionedAt.remove(item.getId());
+        if (since == null || provisioned == null || item.isCancelled()) {
+            return;
+        }
+
+        // the default strategy doesn't plan a slave before its next recurrence, so the saving is only an estimate
+        long now = System.currentTimeMillis();
+        long leadTime = provisioned - since;
+        LOGGER.info(MessageFormat.format("Item {0} waited {1} seconds in the queue. The speculative deployment of its "
+                + "slave was requested {2} seconds after it became buildable, an estimated {3} seconds earlier than "
+                + "the default strategy would plan it.", item.task.getFullDisplayName(), (now - since) / 1000,
+                leadTime / 1000, Math.max(0, getDefaultProvisioningDelay() - leadTime) / 1000));
+    }
+
+    private static void recordProvisioning(Label label) {
+        long now = System.currentTimeMillis();
+        for (Queue.BuildableItem item : Queue.getInstance().getBuildableItems()) {
+            Long since = buildableSince.get(item.getId());
+            if (since != null && label.equals(item.getAssignedLabel()) && !provisionedAt.containsKey(item.getId())) {
+                provisionedAt.put(item.getId(), now);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(MessageFormat.format("Speculatively provisioned slave for item {0} {1} ms after it "
+                            + "became buildable", item.task.getFullDisplayName(), now - since));
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimated time that the default strategy takes to provision a slave for a new item: at least one recurrence of
+     * the node provisioner to pick up the load change.
+     */
+    static long getDefaultProvisioningDelay() {
+        return Long.getLong("hudson.slaves.NodeProvisioner.recurrencePeriod", LoadStatistics.CLOCK);
+    }
+
+}
@@ -16,6 +16,7 @@ import hudson.Extension;
 import hudson.model.AbstractProject;
 import hudson.model.Label;
 import hudson.model.Node;
+import hudson.model.Queue;
 import hudson.model.queue.QueueListener;
 
 import jenkins.model.Jenkins;
@@ -24,7 +25,13 @@ import jenkins.model.Jenkins;
 public class ElasticBoxQueueListener extends QueueListener {
 
     @Override
-    public void onLeft(hudson.model.Queue.LeftItem li) {
+    public void onEnterBuildable(Queue.BuildableItem bi) {
+        ElasticBoxProvisioningStrategy.onEnterBuildable(bi);
+    }
+
+    @Override
+    public void onLeft(Queue.LeftItem li) {
+        ElasticBoxProvisioningStrategy.onLeft(li);
         if (li.isCancelled()) {
             if (li.task instanceof AbstractProject) {
 
@@ -15,7 +15,7 @@ package com.elasticbox.jenkins;
 import com.elasticbox.jenkins.migration.RetentionTimeConverter;
 import com.elasticbox.Client;
 import com.elasticbox.ClientException;
-import com.elasticbox.Constants;
+import com.elasticbox.jenkins.util.BoxCache;
 import com.elasticbox.jenkins.util.JsonUtil;
 
 import hudson.Extension;
@@ -45,10 +45,12 @@ import org.kohsuke.stapler.StaplerRequest;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -65,7 +67,7 @@ public class ElasticBoxSlave extends Slave {
     private static final String ID_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789";
     public static final int MAX_DELETE_ATTEMPTS = 10;
 
-    private final String boxVersion;
+    private String boxVersion;
     private String profileId;
     private final boolean singleUse;
     private String instanceUrl;
@@ -75,8 +77,14 @@ public class ElasticBoxSlave extends Slave {
     private final String cloudName;
     private short deleteAttempts;
     private boolean removableFromCloud = true;
+    // null for the slaves saved before it was tracked
+    private Boolean buildStarted;
 
     private final transient int launchTimeout;
+    private transient volatile Future<AbstractSlaveConfiguration.DeploymentMetadata> deploymentMetadata;
+
+    // name prefixes derived from the box names, keyed by endpoint URL and box ID
+    private static final ConcurrentMap<String, String> namePrefixes = new ConcurrentHashMap<String, String>();
 
     private static String randomId(Random random) {
         StringBuilder sb = new StringBuilder();
@@ -86,20 +94,32 @@ public class ElasticBoxSlave extends Slave {
         return sb.toString();
     }
 
-    private static synchronized String generateName(ElasticBoxCloud cloud, String boxVersion) throws IOException {
-        JSONObject boxJson = cloud.getClient().getBox(boxVersion);
-        String prefix = boxJson.getString("name").replaceAll("[^a-zA-Z0-9-]", "-").toLowerCase();
+    private static String getNamePrefix(ElasticBoxCloud cloud, String boxId) throws IOException {
+        Client client = cloud.getClient();
+        String key = client.getEndpointUrl() + '|' + boxId;
+        String prefix = namePrefixes.get(key);
+        if (prefix != null) {
+            return prefix;
+        }
+
+        // the name of a box is shared by all its versions, so the prefix is derived from the box itself
+        JSONObject boxJson = BoxCache.getBox(client, boxId);
+        prefix = boxJson.getString("name").replaceAll("[^a-zA-Z0-9-]", "-").toLowerCase();
         if (prefix.length() > ID_PREFIX_LENGTH) {
             prefix = prefix.substring(0, ID_PREFIX_LENGTH);
         } else if (prefix.length() < ID_PREFIX_LENGTH) {
-            StringBuilder padding = new StringBuilder();
-            for (int i = prefix.length(); i < ID_PREFIX_LENGTH; i++) {
-                padding.append('-');
-            }
-            prefix += padding.toString();
+            prefix = StringUtils.rightPad(prefix, ID_PREFIX_LENGTH, '-');
         }
+        namePrefixes.putIfAbsent(key, prefix);
+        return prefix;
+    }
 
-        Random random = new Random();
+    private static String generateName(ElasticBoxCloud cloud, String boxId) throws IOException {
+        String prefix = getNamePrefix(cloud, boxId);
+
+        // 36^8 random suffixes make clashes between concurrent callers negligible, the node registry check covers
+        // the existing slaves
+        Random random = ThreadLocalRandom.current();
         String name;
         do {
             name = prefix + '-' + randomId(random);
@@ -123,11 +143,18 @@ public class ElasticBoxSlave extends Slave {
     public ElasticBoxSlave(AbstractSlaveConfiguration config, ElasticBoxCloud cloud,
             RetentionStrategy retentionStrategy, boolean singleUse) throws Descriptor.FormException, IOException {
 
-        super(generateName(cloud, config.resolveBoxVersion(cloud.getClient() )),
+        this(config, cloud, retentionStrategy, singleUse, getRemoteFs(config, cloud));
+    }
+
+    private ElasticBoxSlave(AbstractSlaveConfiguration config, ElasticBoxCloud cloud,
+            RetentionStrategy retentionStrategy, boolean singleUse, String remoteFs)
+            throws Descriptor.FormException, IOException {
+
+        // the box version and deployment policy are resolved in the background and applied right before the
+        // deployment, so creating the node doesn't wait for the ElasticBox API unless the remote FS depends on them
+        super(generateName(cloud, config.getBox()),
                 config.getDescription(),
-                StringUtils.isBlank(config.getRemoteFs() )
-                        ? getRemoteFs(config.resolveDeploymentPolicy(cloud.getClient()), cloud)
-                        : config.getRemoteFs(),
+                remoteFs,
                 config.getExecutors(),
                 config.getMode(),
                 config.getLabels(),
@@ -135,14 +162,67 @@ public class ElasticBoxSlave extends Slave {
                 retentionStrategy,
                 Collections.EMPTY_LIST);
 
-        this.boxVersion = config.getResolvedBoxVersion();
-        this.profileId = config.getResolvedDeploymentPolicy();
+        this.deploymentMetadata = config.resolveDeploymentMetadata(cloud.getClient());
         this.singleUse = singleUse;
+        this.buildStarted = false;
         this.cloudName = cloud.name;
         this.retentionTime = config.getRetentionTime();
         this.launchTimeout = config.getLaunchTimeout();
     }
 
+    /**
+     * Creates a new slave to replace a slave whose instance failed to deploy. The new slave has the same configuration
+     * and remote FS, so creating it doesn't wait for the ElasticBox API.
+     */
+    static ElasticBoxSlave createReplacement(ElasticBoxSlave slave) throws Descriptor.FormException, IOException {
+        AbstractSlaveConfiguration config = slave.getSlaveConfiguration();
+        if (slave.isSingleUse()) {
+            ProjectSlaveConfiguration projectConfig = (ProjectSlaveConfiguration) config;
+            return new ElasticBoxSlave(projectConfig, projectConfig.getElasticBoxCloud(),
+                    new ProjectSlaveConfigurationRetentionStrategy(projectConfig), true, slave.getRemoteFS());
+        }
+
+        ElasticBoxCloud cloud = slave.getCloud();
+        return new ElasticBoxSlave(config, cloud,
+                new SlaveConfigurationRetentionStrategy((SlaveConfiguration) config, cloud), false,
+                slave.getRemoteFS());
+    }
+
+    /**
+     * Checks whether a slave of a configuration can be created without waiting for the ElasticBox API to resolve its
+     * remote FS. The resolution is started in the background if it isn't yet.
+     */
+    static boolean isRemoteFsResolved(AbstractSlaveConfiguration config, ElasticBoxCloud cloud) {
+        return StringUtils.isNotBlank(config.getRemoteFs())
+                || config.resolveDeploymentMetadata(cloud.getClient()).isDone();
+    }
+
+    private static String getRemoteFs(AbstractSlaveConfiguration config, ElasticBoxCloud cloud) throws IOException {
+        if (StringUtils.isNotBlank(config.getRemoteFs())) {
+            return config.getRemoteFs();
+        }
+
+        // the remote FS of the node cannot be changed once it is created, it is resolved from the deployment policy
+        // before the node is created, sharing the resolution with the other slaves of the configuration
+        return getDeploymentMetadata(config.resolveDeploymentMetadata(cloud.getClient()),
+                "slave configuration " + config.getDescription()).getRemoteFs();
+    }
+
+    private static AbstractSlaveConfiguration.DeploymentMetadata getDeploymentMetadata(
+            Future<AbstractSlaveConfiguration.DeploymentMetadata> future, String owner) throws IOException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            throw new IOException(MessageFormat.format("Cannot resolve the box version and deployment policy of "
+                    + "{0}: {1}", owner, cause.getMessage()), cause);
+        }
+    }
+
     @Override
     protected Object readResolve() {
         RetentionStrategy retentionStrategy = getRetentionStrategy();
@@ -171,6 +251,7 @@ public class ElasticBoxSlave extends Slave {
 
     public void setInstanceUrl(String instanceUrl) {
         this.instanceUrl = instanceUrl;
+        save();
     }
 
     public String getInstanceUrl() {
@@ -203,6 +284,7 @@ public class ElasticBoxSlave extends Slave {
         } else {
             this.deleteAttempts = 0;
         }
+        save();
     }
 
     public boolean isDeletable() {
@@ -247,6 +329,7 @@ public class ElasticBoxSlave extends Slave {
 
     public void setInstanceStatusMessage(String message) {
         this.instanceStatusMessage = message;
+        save();
     }
 
     public String getInstanceStatusMessage() {
@@ -269,6 +352,7 @@ public class ElasticBoxSlave extends Slave {
 
     public void setProfileId(String profileId) {
         this.profileId = profileId;
+        save();
     }
 
     public int getLaunchTimeout() {
@@ -283,6 +367,54 @@ public class ElasticBoxSlave extends Slave {
         return boxVersion;
     }
 
+    boolean isDeploymentMetadataResolved() {
+        requestDeploymentMetadata();
+        Future<AbstractSlaveConfiguration.DeploymentMetadata> future = deploymentMetadata;
+        return future == null || future.isDone();
+    }
+
+    /**
+     * Resolves again the box version and deployment policy of a slave loaded from disk before they were applied, the
+     * future of the resolution is not saved with the slave.
+     */
+    void requestDeploymentMetadata() {
+        if (deploymentMetadata != null || (boxVersion != null && profileId != null)) {
+            return;
+        }
+
+        AbstractSlaveConfiguration slaveConfig = getSlaveConfiguration();
+        if (slaveConfig == null) {
+            return;
+        }
+        try {
+            deploymentMetadata = slaveConfig.resolveDeploymentMetadata(getCloud().getClient());
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, MessageFormat.format("Cannot resolve the box version and deployment policy of "
+                    + "slave {0}", getNodeName()), ex);
+        }
+    }
+
+    /**
+     * Applies the box version and deployment policy resolved for the slave configuration of this slave,
+     * waiting for them if they are not yet available.
+     *
+     * @throws IOException if they cannot be resolved
+     */
+    void resolveDeploymentMetadata() throws IOException {
+        requestDeploymentMetadata();
+        Future<AbstractSlaveConfiguration.DeploymentMetadata> future = deploymentMetadata;
+        if (future == null) {
+            return;
+        }
+
+        AbstractSlaveConfiguration.DeploymentMetadata metadata = getDeploymentMetadata(future,
+                "slave " + getNodeName());
+        boxVersion = metadata.getBoxVersion();
+        profileId = metadata.getDeploymentPolicy();
+        deploymentMetadata = null;
+        save();
+    }
+
     public void terminate() throws IOException {
         checkInstanceReachable();
         Client client = getCloud().getClient();
@@ -406,6 +538,28 @@ public class ElasticBoxSlave extends Slave {
         save();
     }
 
+    /**
+     * Checks whether a build has started on this slave. The build history is only searched for the slaves saved
+     * before the started builds were tracked.
+     */
+    public boolean isBuildStarted() {
+        if (buildStarted == null) {
+            SlaveComputer computer = getComputer();
+            if (computer == null) {
+                return false;
+            }
+            buildStarted = !computer.getBuilds().isEmpty();
+        }
+        return buildStarted;
+    }
+
+    void setBuildStarted() {
+        if (!Boolean.TRUE.equals(buildStarted)) {
+            buildStarted = true;
+            save();
+        }
+    }
+
     boolean hasExpired() {
         if (isSingleUse() && builds > 0) {
             return true;
@@ -416,29 +570,12 @@ public class ElasticBoxSlave extends Slave {
                 || (slaveConfig.getMaxBuilds() > 0 && builds >= slaveConfig.getMaxBuilds()));
     }
 
+    /**
+     * Schedules this slave to be written to disk. Only the configuration file of this node is written, changes made
+     * within a short period of time are written at once.
+     */
     public void save() {
-        try {
-            Jenkins.getInstance().save();
-        } catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-        }
-    }
-
-    private static String getRemoteFs(String profileId, ElasticBoxCloud cloud) throws IOException {
-        Client client = cloud.getClient();
-        JSONObject profile = client.getBox(profileId);
-        JSONArray claims = profile.getJSONArray("claims");
-        if (claims.contains(Constants.LINUX_CLAIM)) {
-            return "/var/jenkins";
-        } else if (claims.contains(Constants.WINDOWS_CLAIM)) {
-            return "C:\\Jenkins";
-        } else {
-            throw new IOException(
-                    MessageFormat.format(
-                            "Cannot create slave since the selected deployment policy ''{0}'' supports"
-                                    + " neither Linux nor Windows.",
-                            profile.getString("name")));
-        }
+        SlavePersistence.markDirty(this);
     }
 
     public boolean isRemovableFromCloud() {
@@ -447,6 +584,7 @@ public class ElasticBoxSlave extends Slave {
 
     public void setRemovableFromCloud(boolean removableFromCloud) {
         this.removableFromCloud = removableFromCloud;
+        save();
     }
 
     private abstract static class ElasticBoxRetentionStrategy extends RetentionStrategy<ElasticBoxComputer> {
@@ -461,7 +599,7 @@ public class ElasticBoxSlave extends Slave {
         }
 
         @Override
-        public synchronized long check(ElasticBoxComputer computer) {
+        public long check(ElasticBoxComputer computer) {
             if (shouldTerminate(computer)) {
                 LOGGER.info(
                         MessageFormat.format(
@@ -573,54 +711,28 @@ public class ElasticBoxSlave extends Slave {
 
         @Override
         public boolean shouldTerminate(ElasticBoxComputer computer) {
+            if (!super.shouldTerminate(computer)) {
+                return false;
+            }
+
             if (getMinInstances() > 0 && getSlaveConfiguration() != null) {
-                List<JSONObject> activeInstances;
+                ElasticBoxCloud cloud;
                 try {
-                    activeInstances = ElasticBoxSlaveHandler.getActiveInstances(computer.getSlave().getCloud());
+                    cloud = computer.getSlave().getCloud();
                 } catch (IOException ex) {
                     LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                    // cannot decide whether the slave should be terminated because the active instances
-                    // could not be fetched
-                    // leave it alone for now
                     return false;
                 }
                 if (LOGGER.isLoggable(Level.FINEST)) {
                     LOGGER.finest("Checking Slave - " + computer.getSlave() );
                 }
 
-                if (activeInstances.size() <= getMinInstances()) {
-                    return false;
-                }
-
-                Set<String> configActiveInstanceIDs = new HashSet<String>();
-                for (Node node : Jenkins.getInstance().getNodes()) {
-                    if (node instanceof ElasticBoxSlave) {
-                        ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                        if (slave.getSlaveConfiguration() == getSlaveConfiguration()) {
-                            configActiveInstanceIDs.add(slave.getInstanceId());
-                        }
-                    }
-                }
-
-                if (configActiveInstanceIDs.isEmpty()) {
-                    return false;
-                }
-
-                int instanceCount = 0;
-                for (JSONObject instance : activeInstances) {
-                    if (configActiveInstanceIDs.contains(instance.getString("id"))) {
-                        instanceCount++;
-                    }
-                }
-
-                if (configActiveInstanceIDs.contains(computer.getSlave().getInstanceId())
-                        && instanceCount <= getMinInstances()) {
-
-                    return false;
-                }
+                // the minimum number of instances of each slave configuration is evaluated for all slaves at once, each
+                // idle slave takes its share of the number of slaves that can be terminated
+                return RetentionCoordinator.acquireTermination(cloud, slaveConfigId);
             }
 
-            return super.shouldTerminate(computer);
+            return true;
         }
 
     }
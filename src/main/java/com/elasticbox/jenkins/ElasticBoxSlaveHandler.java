@@ -15,7 +15,6 @@ package com.elasticbox.jenkins;
 import static com.elasticbox.jenkins.ElasticBoxExecutor.threadPool;
 
 import com.elasticbox.Client;
-import com.elasticbox.ClientException;
 import com.elasticbox.Constants;
 import com.elasticbox.IProgressMonitor;
 import com.elasticbox.jenkins.util.SlaveInstance;
@@ -26,13 +25,14 @@ import hudson.model.Descriptor;
 import hudson.model.Node;
 import hudson.model.TaskListener;
 import hudson.slaves.Cloud;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
 
 import jenkins.model.Jenkins;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
-import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
@@ -43,10 +43,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -57,13 +63,24 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
 
     public static final int TIMEOUT_MINUTES = Integer.getInteger("elasticbox.jenkins.deploymentTimeout", 60);
 
+    private static final int MAX_PARALLEL_DEPLOYMENTS =
+            Integer.getInteger("elasticbox.jenkins.maxParallelDeployments", 10);
+
     private static final Queue<InstanceCreationRequest> incomingQueue =
             new ConcurrentLinkedQueue<InstanceCreationRequest>();
 
     private static final Queue<InstanceCreationRequest> submittedQueue =
             new ConcurrentLinkedQueue<InstanceCreationRequest>();
 
-    private static final Queue<ElasticBoxSlave> terminatedSlaves = new ConcurrentLinkedQueue<ElasticBoxSlave>();
+    // requests whose deploy request is being sent to ElasticBox, between the incoming and the submitted queue
+    private static final Set<InstanceCreationRequest> deployingRequests =
+            Collections.newSetFromMap(new ConcurrentHashMap<InstanceCreationRequest, Boolean>());
+
+    private static final ExecutorService deploymentExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_DEPLOYMENTS,
+            new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+
+    private static final Set<ElasticBoxSlave> terminatedSlaves =
+            Collections.newSetFromMap(new ConcurrentHashMap<ElasticBoxSlave, Boolean>());
 
     static class InstanceCreationRequest {
         private ElasticBoxSlave slave;
@@ -93,26 +110,37 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Adding new slave to Incoming queue - " + slave);
         }
+        LifecycleJournal.record(LifecycleJournal.Event.DEPLOY, slave);
         incomingQueue.add(newRequest);
         return newRequest.monitor;
     }
 
+    /**
+     * Keeps monitoring the deployment of a slave whose instance was requested before Jenkins restarted.
+     */
+    static void resumeSubmittedRequest(ElasticBoxSlave slave) throws IOException {
+        InstanceCreationRequest request = new InstanceCreationRequest(slave);
+        request.monitor.setMonitor(slave.getCloud().getClient().getDeployMonitor(slave.getInstanceUrl()));
+        request.monitor.setLaunched();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Adding resumed slave to Submitted queue - " + slave);
+        }
+        submittedQueue.add(request);
+    }
+
     protected void resubmitRequest(InstanceCreationRequest request) {
         request.attempts++;
         request.monitor.setLaunched();
         ElasticBoxSlave oldSlave = request.slave;
         try {
+            request.slave = ElasticBoxSlave.createReplacement(oldSlave);
             if (oldSlave.isSingleUse() ) {
-                request.slave =
-                        new ElasticBoxSlave( (ProjectSlaveConfiguration) oldSlave.getSlaveConfiguration(), true);
                 request.slave.setLabelString(oldSlave.getLabelString() );
-            } else {
-                request.slave =
-                        new ElasticBoxSlave((SlaveConfiguration) oldSlave.getSlaveConfiguration(), oldSlave.getCloud());
             }
             Jenkins.getInstance().addNode(request.slave);
             removeSlave(oldSlave);
             LOGGER.info("Adding new slave attempt to Incoming queue - " + request.slave);
+            LifecycleJournal.record(LifecycleJournal.Event.DEPLOY, request.slave);
             incomingQueue.add(request);
 
         } catch (IOException | Descriptor.FormException e) {
@@ -126,15 +154,20 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                 return true;
             }
         }
+        for (InstanceCreationRequest request : deployingRequests) {
+            if (request.slave == slave) {
+                return true;
+            }
+        }
         return false;
     }
 
     public static final boolean addToTerminatedQueue(ElasticBoxSlave slave) {
-        if (!terminatedSlaves.contains(slave)) {
+        if (terminatedSlaves.add(slave)) {
             if (LOGGER.isLoggable(Level.FINE)) {
-                LOGGER.fine("Adding slave to Terminated queue. - " + slave);
+                LOGGER.fine("Adding slave to Terminated queue. - " + slave.getNodeName());
             }
-            terminatedSlaves.add(slave);
+            LifecycleJournal.record(LifecycleJournal.Event.TERMINATE, slave);
 
             for (Iterator<InstanceCreationRequest> iter = submittedQueue.iterator(); iter.hasNext();) {
                 InstanceCreationRequest request = iter.next();
@@ -142,11 +175,16 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                     iter.remove();
                 }
             }
+            TerminationPipeline.submit(slave);
             return true;
         }
         return false;
     }
 
+    static void removeFromTerminatedQueue(ElasticBoxSlave slave) {
+        terminatedSlaves.remove(slave);
+    }
+
     public static List<JSONObject> getActiveInstances(ElasticBoxCloud cloud) throws IOException {
         return new SlaveInstanceManager().getInstances(cloud);
     }
@@ -194,17 +232,10 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         SlaveInstanceManager slaveInstanceManager = new SlaveInstanceManager();
         purgeSlaves(slaveInstanceManager, listener);
 
-        boolean saveConfig = processSubmittedQueue(listener);
-
-        saveConfig |= processIncomingQueue(listener, slaveInstanceManager);
+        // the slaves changed here are persisted individually by SlavePersistence
+        processSubmittedQueue(listener);
 
-        if (saveConfig) {
-            try {
-                Jenkins.getInstance().save();
-            } catch (IOException ex) {
-                LOGGER.log(Level.SEVERE, "Error saving configuration", ex);
-            }
-        }
+        processIncomingQueue(listener, slaveInstanceManager);
     }
 
     private boolean removeSlaveIfLaunchTimedOut(InstanceCreationRequest request, TaskListener listener) {
@@ -220,8 +251,7 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         return false;
     }
 
-    private boolean processSubmittedQueue(TaskListener listener) {
-        boolean saveNeeded = false;
+    private void processSubmittedQueue(TaskListener listener) {
         for (Iterator<InstanceCreationRequest> iter = submittedQueue.iterator(); iter.hasNext();) {
             InstanceCreationRequest request = iter.next();
             final ElasticBoxSlave slave = request.slave;
@@ -231,8 +261,8 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                         slave.setInstanceStatusMessage(MessageFormat.format(
                                 "Successfully deployed at <a href=\"{0}\">{0}</a>",
                                 slave.getInstancePageUrl()));
-                        saveNeeded = true;
                         LOGGER.info("Request completed successfully. Removing it from submitted queue - " + slave);
+                        LifecycleJournal.record(LifecycleJournal.Event.ONLINE, slave);
                         iter.remove();
                     } else {
                         if (removeSlaveIfLaunchTimedOut(request, listener)) {
@@ -250,6 +280,7 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
 
                 if (request.maxAttemptsReached() ) {
                     slave.setRemovableFromCloud(false);
+                    LifecycleJournal.record(LifecycleJournal.Event.FAILED, slave);
 
                     String cloud = null;
                     try {
@@ -272,7 +303,6 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                     }
                     resubmitRequest(request);
                     slave.markForTermination();
-                    saveNeeded = true;
                 }
                 iter.remove();
 
@@ -280,11 +310,11 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                 log(Level.SEVERE, ex.getMessage(), ex, listener);
             }
         }
-        return saveNeeded;
     }
 
-    private static void removeSlave(ElasticBoxSlave slave) {
+    static void removeSlave(ElasticBoxSlave slave) {
         try {
+            LifecycleJournal.record(LifecycleJournal.Event.DELETE, slave);
             Jenkins.getInstance().removeNode(slave);
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE,
@@ -320,94 +350,6 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         return slavesToRemove;
     }
 
-    private boolean purgeSlave(ElasticBoxSlave slave, TaskListener listener) {
-        if (LOGGER.isLoggable(Level.FINER)) {
-            LOGGER.finer("Purging slave - " + slave);
-        }
-        JSONObject instance;
-        String state;
-        try {
-            instance = slave.getInstance();
-            state = slave.getInstanceState();
-        } catch (IOException ex) {
-            if (ex instanceof ClientException && ((ClientException) ex).getStatusCode() == HttpStatus.SC_NOT_FOUND) {
-                return true;
-            }
-            log(Level.SEVERE,
-                    "Error fetching the instance data of ElasticBox slave - " + slave.getDisplayName(), ex, listener);
-
-            return false;
-        }
-
-        switch (state) {
-            case Client.InstanceState.PROCESSING:
-                if (LOGGER.isLoggable(Level.FINEST)) {
-                    LOGGER.finest("Slave still processing, cannot be purged - " + slave);
-                }
-                return false;
-
-            case Client.InstanceState.UNAVAILABLE:
-                if (LOGGER.isLoggable(Level.FINE)) {
-                    LOGGER.fine("Slave is unavailable - " + slave);
-                }
-                try {
-                    slave.getCloud().getClient().forceTerminate(instance.getString("id"));
-                } catch (IOException ex) {
-                    log(Level.SEVERE,
-                            "Error force-terminating the instance of ElasticBox slave - " + slave.getDisplayName(),
-                            ex, listener);
-                }
-                return false;
-
-            default:
-                String event = instance.getJSONObject("operation").getString("event");
-                if (Client.TERMINATE_OPERATIONS.contains(event) ) {
-                    if (slave.isRemovableFromCloud() ) {
-                        LOGGER.info("Deleting slave - " + slave);
-                        deleteInstance(slave, listener);
-                    } else if (!slave.isDeletable() ) {
-                        if (LOGGER.isLoggable(Level.FINE)) {
-                            LOGGER.fine("Unavailable Slave has been terminated manually - " + slave);
-                        }
-                    }
-                    return true;
-                } else {
-                    if (slave.maxDeleteAttemptsReached() ) {
-                        return true;
-                    }
-                    try {
-                        if (LOGGER.isLoggable(Level.FINE)) {
-                            LOGGER.fine("Terminating not required slave - " + slave);
-                        }
-                        slave.terminate();
-
-                    } catch (IOException e) {
-                        log(Level.SEVERE,
-                                "Error terminating the instance of ElasticBox slave - " + slave, e, listener);
-                    }
-                }
-                return false;
-        }
-    }
-
-    private boolean deleteInstance(ElasticBoxSlave slave, TaskListener listener) {
-        try  {
-            try {
-                slave.delete();
-            } catch (ClientException ex) {
-                if (ex.getStatusCode() == HttpStatus.SC_CONFLICT) {
-                    return false;
-                } else if (ex.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
-                    throw ex;
-                }
-            }
-            return true;
-        } catch (IOException ex) {
-            log(Level.SEVERE, "Error deleting ElasticBox slave - " + slave.getDisplayName(), ex, listener);
-            return false;
-        }
-    }
-
     private void purgeSlaves(SlaveInstanceManager slaveInstanceManager, final TaskListener listener)
             throws IOException {
 
@@ -421,22 +363,11 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
             }
         }
 
-        // remove terminated slaves
-        for (final ElasticBoxSlave slave: terminatedSlaves) {
-            if (LOGGER.isLoggable(Level.FINE)) {
-                LOGGER.fine("Terminated slave instance found. - " + slave);
+        // terminate, delete and remove the terminated slaves, the pipelines ignore the slaves they already handle
+        for (ElasticBoxSlave slave: terminatedSlaves) {
+            if (TerminationPipeline.submit(slave) && LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Terminated slave instance found. - " + slave.getNodeName());
             }
-            threadPool.submit(new Runnable() {
-
-                @Override
-                public void run() {
-                    if (purgeSlave(slave, listener)) {
-                        terminatedSlaves.remove(slave);
-                        removeSlave(slave);
-                    }
-                }
-
-            });
         }
 
         // remove bad slaves
@@ -458,31 +389,19 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         }
     }
 
-    private void deployInstance(InstanceCreationRequest request) throws IOException {
+    private void deployInstance(InstanceCreationRequest request, DeploymentTemplate template) throws IOException {
         final ElasticBoxSlave slave = request.slave;
-        final ElasticBoxCloud cloud = slave.getCloud();
-        final Client ebClient = cloud.getClient();
-
-        LOGGER.info("Deploying box - " + ebClient.getBoxPageUrl(slave.getBoxVersion() ));
+        final Client ebClient = slave.getCloud().getClient();
 
-        final AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
-
-        final JSONArray variables = getJenkinsVariables(slave);
-        final String workspace = slaveConfig.getWorkspace();
-
-        List<String> tags = new ArrayList<>();
-        tags.add(slave.getNodeName() );
-
-        String userTags = slaveConfig.getTags();
-        if (StringUtils.isNotEmpty(userTags) ) {
-            String[] userTagList = StringUtils.split(userTags, ", ");
-            tags.addAll(Arrays.asList(userTagList) );
-        }
+        LOGGER.info("Deploying box - " + ebClient.getBoxPageUrl(template.boxVersion));
 
-        IProgressMonitor monitor = ebClient.deploy(slave.getBoxVersion(), slave.getProfileId(), slave.getDisplayName(),
-                workspace, tags, variables, null, null, slave.getPolicyVariables(), Constants.AUTOMATIC_UPDATES_OFF);
+        // the slave name and its JNLP secret are the only inputs that differ between the slaves of a template
+        IProgressMonitor monitor = ebClient.deploy(template.boxVersion, template.profileId, slave.getDisplayName(),
+                template.workspace, template.createTags(slave), template.createVariables(slave), null, null,
+                template.createPolicyVariables(), Constants.AUTOMATIC_UPDATES_OFF);
 
         slave.setInstanceUrl(monitor.getResourceUrl());
+        LifecycleJournal.record(LifecycleJournal.Event.SUBMIT, slave);
         slave.setInstanceStatusMessage(
                 MessageFormat.format("Submitted request to deploy instance <a href=\"{0}\">{0}</a>",
                 slave.getInstancePageUrl()));
@@ -495,25 +414,132 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         submittedQueue.add(request);
     }
 
-    private JSONArray getJenkinsVariables(ElasticBoxSlave slave) throws IOException {
-        Client ebClient = slave.getCloud().getClient();
-        AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
-        JSONArray variables = SlaveInstance.createJenkinsVariables(ebClient, slave);
-        JSONObject jenkinsVariable = variables.getJSONObject(0);
-
-        String scope = jenkinsVariable.containsKey("scope") ? jenkinsVariable.getString("scope") : StringUtils.EMPTY;
-
-        if (slaveConfig != null && slaveConfig.getVariables() != null) {
-            JSONArray configuredVariables = VariableResolver.parseVariables(slaveConfig.getVariables() );
-            for (int i = 0; i < configuredVariables.size(); i++) {
-                JSONObject variable = configuredVariables.getJSONObject(i);
-                if (!scope.equals(variable.getString("scope"))
-                        || !SlaveInstance.REQUIRED_VARIABLES.contains(variable.getString("name") )) {
-                    variables.add(variable);
+    private void deployInstances(List<InstanceCreationRequest> requests, final TaskListener listener) {
+        final DeploymentTemplate template;
+        try {
+            template = new DeploymentTemplate(requests.get(0).slave);
+        } catch (IOException ex) {
+            for (InstanceCreationRequest request : requests) {
+                cancelRequest(request, ex, listener);
+            }
+            return;
+        }
+
+        // the slaves share the resolved template, their deploy requests are sent in parallel by the deployment
+        // executor so that this round doesn't wait for them
+        for (final InstanceCreationRequest request : requests) {
+            deployingRequests.add(request);
+            try {
+                deploymentExecutor.submit(new Runnable() {
+                    public void run() {
+                        try {
+                            deployInstance(request, template, listener);
+                        } finally {
+                            deployingRequests.remove(request);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                deployingRequests.remove(request);
+                cancelRequest(request, ex, listener);
+            }
+        }
+    }
+
+    private void deployInstance(InstanceCreationRequest request, DeploymentTemplate template, TaskListener listener) {
+        try {
+            deployInstance(request, template);
+            log("Deploying a new instance for slave - " + request.slave.getDisplayName(), listener);
+        } catch (IOException | RuntimeException ex) {
+            cancelRequest(request, ex, listener);
+        }
+    }
+
+    private void cancelRequest(InstanceCreationRequest request, Exception ex, TaskListener listener) {
+        log(Level.SEVERE, MessageFormat.format("Error deploying a new instance for slave {0}",
+                request.slave.getDisplayName()), ex, listener);
+        request.monitor.setMonitor(IProgressMonitor.DONE_MONITOR);
+        removeSlave(request.slave);
+    }
+
+    /**
+     * Deployment inputs shared by the slaves of the same slave configuration, box version and deployment policy.
+     */
+    private static final class DeploymentTemplate {
+        private final String boxVersion;
+        private final String profileId;
+        private final String workspace;
+        private final String scope;
+        private final List<String> tags;
+        private final JSONArray configuredVariables;
+        private final JSONArray policyVariables;
+
+        DeploymentTemplate(ElasticBoxSlave slave) throws IOException {
+            Client ebClient = slave.getCloud().getClient();
+            AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+
+            boxVersion = slave.getBoxVersion();
+            profileId = slave.getProfileId();
+            workspace = slaveConfig.getWorkspace();
+            scope = SlaveInstance.getJenkinsVariablesScope(ebClient, boxVersion);
+            policyVariables = slave.getPolicyVariables();
+
+            tags = new ArrayList<>();
+            String userTags = slaveConfig.getTags();
+            if (StringUtils.isNotEmpty(userTags) ) {
+                tags.addAll(Arrays.asList(StringUtils.split(userTags, ", ")));
+            }
+
+            configuredVariables = new JSONArray();
+            String requiredVariablesScope = scope != null ? scope : StringUtils.EMPTY;
+            if (slaveConfig.getVariables() != null) {
+                JSONArray variables = VariableResolver.parseVariables(slaveConfig.getVariables() );
+                for (int i = 0; i < variables.size(); i++) {
+                    JSONObject variable = variables.getJSONObject(i);
+                    if (!requiredVariablesScope.equals(variable.getString("scope"))
+                            || !SlaveInstance.REQUIRED_VARIABLES.contains(variable.getString("name") )) {
+                        configuredVariables.add(variable);
+                    }
                 }
             }
         }
-        return variables;
+
+        List<String> createTags(ElasticBoxSlave slave) {
+            List<String> slaveTags = new ArrayList<>(tags.size() + 1);
+            slaveTags.add(slave.getNodeName() );
+            slaveTags.addAll(tags);
+            return slaveTags;
+        }
+
+        JSONArray createVariables(ElasticBoxSlave slave) {
+            JSONArray variables = SlaveInstance.createJenkinsVariables(scope, slave);
+            // Client.deploy modifies the variables, each deployment gets its own copy
+            for (Object variable : configuredVariables) {
+                variables.add(JSONObject.fromObject(variable));
+            }
+            return variables;
+        }
+
+        JSONArray createPolicyVariables() {
+            return policyVariables != null ? JSONArray.fromObject(policyVariables.toString()) : null;
+        }
+    }
+
+    private static List<String> getTemplateKey(ElasticBoxSlave slave) throws IOException {
+        AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+        return getTemplateKey(slave.getCloud().name,
+                slaveConfig != null ? slaveConfig.getId() : slave.getNodeName(),
+                slave.getBoxVersion(), slave.getProfileId());
+    }
+
+    /**
+     * Gets the key of the slaves that share a {@link DeploymentTemplate}: the slaves of the same configuration that
+     * deploy the same box version with the same deployment policy in the same cloud.
+     *
+     * @param configId the ID of the slave configuration, or the name of the slave if it has no configuration
+     */
+    static List<String> getTemplateKey(String cloudName, String configId, String boxVersion, String profileId) {
+        return Arrays.asList(cloudName, configId, boxVersion, profileId);
     }
 
     private Map<AbstractSlaveConfiguration, List<ElasticBoxSlave>> countSlavesPerConfiguration() {
@@ -544,6 +570,14 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
             List<ElasticBoxSlave> slaveList = slaveConfigToSlaveCountMap.get(slaveConfig);
             int slaveCount = (slaveList == null) ? 0 : slaveList.size();
             if (slaveConfig.getMinInstances() > slaveCount) {
+                if (!ElasticBoxSlave.isRemoteFsResolved(slaveConfig, cloud)) {
+                    // the slaves are created in a later round, once the remote FS is resolved in the background
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.fine(MessageFormat.format("Waiting for the remote FS of slave config [{0}] to be "
+                                + "resolved to create its slaves", slaveConfig.getDescription()));
+                    }
+                    continue;
+                }
 
                 try {
                     int minInstances = slaveConfig.getMinInstances();
@@ -594,33 +628,48 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
 
     private void checkNumberOfSlaves() throws IOException {
         Map<AbstractSlaveConfiguration, List<ElasticBoxSlave>> slaveCfgToSlaveListMap = countSlavesPerConfiguration();
+        List<String> cloudNames = new ArrayList<>();
         for (Cloud cloud : Jenkins.getInstance().clouds) {
             if (cloud instanceof ElasticBoxCloud) {
+                cloudNames.add(cloud.name);
                 checkNumberOfSlaves((ElasticBoxCloud) cloud, slaveCfgToSlaveListMap);
             }
         }
+        // the termination pipelines of the clouds that don't exist anymore are shut down
+        TerminationPipeline.retainClouds(cloudNames);
     }
 
-    private boolean processIncomingQueue(TaskListener listener, SlaveInstanceManager instanceManager )
+    private void processIncomingQueue(TaskListener listener, SlaveInstanceManager instanceManager )
             throws IOException {
 
 
         if (!incomingQueue.isEmpty() ) {
             Map<ElasticBoxCloud, Integer> cloudToMaxNewInstancesMap = instanceManager.getMaxInstancesPerCloud();
+            List<InstanceCreationRequest> unresolvedRequests = new ArrayList<>();
+            Map<List<String>, List<InstanceCreationRequest>> templateKeyToRequestsMap = new LinkedHashMap<>();
 
             for (InstanceCreationRequest req = incomingQueue.poll(); req != null; req = incomingQueue.poll()) {
+                if (!req.slave.isDeploymentMetadataResolved()) {
+                    // the box version and deployment policy are still being resolved, try again on the next round
+                    unresolvedRequests.add(req);
+                    continue;
+                }
+
                 ElasticBoxCloud cloud = req.slave.getCloud();
                 int maxNewInstances = cloudToMaxNewInstancesMap.get(cloud);
                 if (maxNewInstances > 0) {
                     try {
-                        deployInstance(req);
-                        cloudToMaxNewInstancesMap.put(cloud, maxNewInstances--);
-                        log("Deploying a new instance for slave - " + req.slave.getDisplayName(), listener);
+                        req.slave.resolveDeploymentMetadata();
+                        List<String> templateKey = getTemplateKey(req.slave);
+                        List<InstanceCreationRequest> requests = templateKeyToRequestsMap.get(templateKey);
+                        if (requests == null) {
+                            requests = new ArrayList<>();
+                            templateKeyToRequestsMap.put(templateKey, requests);
+                        }
+                        requests.add(req);
+                        cloudToMaxNewInstancesMap.put(cloud, maxNewInstances - 1);
                     } catch (IOException ex) {
-                        log(Level.SEVERE, MessageFormat.format("Error deploying a new instance for slave {0}",
-                                req.slave.getDisplayName()), ex, listener);
-                        req.monitor.setMonitor(IProgressMonitor.DONE_MONITOR);
-                        removeSlave(req.slave);
+                        cancelRequest(req, ex, listener);
                     }
                 } else {
                     log(Level.WARNING, "Max number of ElasticBox instances has been reached for: "
@@ -630,17 +679,31 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                     removeSlave(req.slave);
                 }
             }
-            return true;
+            incomingQueue.addAll(unresolvedRequests);
+
+            for (List<InstanceCreationRequest> requests : templateKeyToRequestsMap.values()) {
+                deployInstances(requests, listener);
+            }
         }
-        return false;
     }
 
-    public static void launchSingleUseSlave(AbstractSlaveConfiguration slaveCfg, String label)
-            throws IOException, Descriptor.FormException {
-
-        ElasticBoxSlave slave = new ElasticBoxSlave( (ProjectSlaveConfiguration) slaveCfg, true);
-        slave.setLabelString(label);
-        Jenkins.getInstance().addNode(slave);
-        submit(slave);
+    /**
+     * Creates a single use slave in the background, creating it can wait for the ElasticBox API to resolve its
+     * remote FS.
+     */
+    public static void launchSingleUseSlave(final AbstractSlaveConfiguration slaveCfg, final String label) {
+        ElasticBoxExecutor.threadPool.submit(new Runnable() {
+            public void run() {
+                try {
+                    ElasticBoxSlave slave = new ElasticBoxSlave( (ProjectSlaveConfiguration) slaveCfg, true);
+                    slave.setLabelString(label);
+                    Jenkins.getInstance().addNode(slave);
+                    submit(slave);
+                } catch (IOException | Descriptor.FormException ex) {
+                    LOGGER.log(Level.SEVERE, MessageFormat.format("Error launching single use slave for label {0}",
+                            label), ex);
+                }
+            }
+        });
     }
 }
@@ -27,13 +27,24 @@ import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Initializers {
     private static final Logger LOGGER = Logger.getLogger(Initializers.class.getName());
 
+    private static final int TAGGING_CONCURRENCY =
+            Integer.getInteger(Initializers.class.getName() + ".taggingConcurrency", 4);
+    private static final int TAGGING_PROGRESS_INTERVAL = 50;
+
     @Initializer(after = InitMilestone.JOB_LOADED)
     public static void tagSlaveInstances() throws IOException {
         LOGGER.finest("Tagging slave instances");
@@ -50,10 +61,22 @@ public class Initializers {
 
             public void run() {
                 try {
+                    // the instances fetched with one listing per workspace tell which ones are already tagged
                     SlaveInstanceManager manager = new SlaveInstanceManager();
+                    List<JSONObject> untaggedInstances = new ArrayList<JSONObject>();
+                    int instanceCount = 0;
                     for (JSONObject instance : manager.getInstances()) {
+                        instanceCount++;
                         ElasticBoxSlave slave = manager.getSlave(instance.getString("id"));
-                        ElasticBoxSlaveHandler.getInstance().tagSlaveInstance(instance, slave);
+                        if (slave != null && !instance.getJSONArray("tags").contains(slave.getNodeName())) {
+                            untaggedInstances.add(instance);
+                        }
+                    }
+
+                    LOGGER.info(MessageFormat.format("{0} of {1} ElasticBox slave instances need to be tagged",
+                            untaggedInstances.size(), instanceCount));
+                    if (!untaggedInstances.isEmpty()) {
+                        tagInstances(manager, untaggedInstances);
                     }
                 } catch (IOException ex) {
                     LOGGER.log(Level.SEVERE, "Error tagging slave instances", ex);
@@ -63,6 +86,43 @@ public class Initializers {
         });
     }
 
+    private static void tagInstances(final SlaveInstanceManager manager, List<JSONObject> instances) {
+        // tag with a few low priority threads so that the provisioning of slaves is not delayed by the tagging
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(TAGGING_CONCURRENCY, instances.size()),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "ElasticBox slave instance tagging");
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+
+        final int total = instances.size();
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        for (final JSONObject instance : instances) {
+            executor.submit(new Runnable() {
+                public void run() {
+                    ElasticBoxSlave slave = manager.getSlave(instance.getString("id"));
+                    try {
+                        ElasticBoxSlaveHandler.getInstance().tagSlaveInstance(instance, slave);
+                    } catch (IOException | RuntimeException ex) {
+                        failed.incrementAndGet();
+                        LOGGER.log(Level.SEVERE, "Error tagging the instance of slave " + slave.getNodeName(), ex);
+                    }
+
+                    int count = processed.incrementAndGet();
+                    if (count % TAGGING_PROGRESS_INTERVAL == 0 || count == total) {
+                        LOGGER.info(MessageFormat.format("Tagged {0} of {1} ElasticBox slave instances, {2} failed",
+                                count - failed.get(), total, failed.get()));
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
     @Initializer(after = InitMilestone.JOB_LOADED)
     public static void setSlaveConfigurationId() throws IOException {
         LOGGER.finest("Fixing old slave configurations");
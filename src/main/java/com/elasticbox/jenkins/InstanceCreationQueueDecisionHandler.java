@@ -17,7 +17,6 @@ import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.BuildableItemWithBuildWrappers;
-import hudson.model.Descriptor;
 import hudson.model.Queue;
 import hudson.model.labels.LabelAtom;
 
@@ -66,14 +65,8 @@ public class InstanceCreationQueueDecisionHandler extends Queue.QueueDecisionHan
                 ProjectSlaveConfiguration config = instanceCreator.getSlaveConfiguration();
                 LabelAtom label = ElasticBoxLabelFinder.getLabel(config, singleUse);
                 if (singleUse) {
-                    try {
-                        LOGGER.info("Launching single use slave for task: " + project.getAssignedLabelString() );
-                        ElasticBoxSlaveHandler.launchSingleUseSlave(config, label.getName() );
-                    } catch (Descriptor.FormException ex) {
-                        LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                    } catch (IOException ex) {
-                        LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                    }
+                    LOGGER.info("Launching single use slave for task: " + project.getAssignedLabelString() );
+                    ElasticBoxSlaveHandler.launchSingleUseSlave(config, label.getName() );
                 }
                 try {
                     project.setAssignedLabel(label);
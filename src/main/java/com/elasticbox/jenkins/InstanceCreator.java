@@ -18,9 +18,9 @@ import static com.elasticbox.jenkins.DescriptorHelper.getEmptyListBoxModel;
 
 import com.elasticbox.Client;
 import com.elasticbox.jenkins.migration.AbstractConverter;
+import com.elasticbox.jenkins.migration.DeferredMigrations;
 import com.elasticbox.jenkins.migration.RetentionTimeConverter;
 import com.elasticbox.jenkins.migration.Version;
-import com.elasticbox.jenkins.model.services.deployment.DeployBoxOrderServiceImpl;
 import com.elasticbox.jenkins.model.services.deployment.DeploymentType;
 import com.elasticbox.jenkins.model.services.error.ServiceException;
 import com.elasticbox.jenkins.util.ClientCache;
@@ -87,14 +87,12 @@ public class InstanceCreator extends BuildWrapper {
     public Environment setUp(AbstractBuild build, Launcher launcher, BuildListener listener)
         throws IOException, InterruptedException {
 
-        for (Node node : build.getProject().getAssignedLabel().getNodes()) {
-            if (node instanceof ElasticBoxSlave) {
-                ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                if (slave.getComputer().getBuilds().contains(build)) {
-                    ebSlave = slave;
-                    break;
-                }
-            }
+        DeferredMigrations.ensureMigrated(this);
+
+        // the build is bound to the node it was assigned to before the build wrappers are set up
+        Node node = build.getBuiltOn();
+        if (node instanceof ElasticBoxSlave) {
+            ebSlave = (ElasticBoxSlave) node;
         }
 
         return new Environment() {
@@ -195,14 +193,19 @@ public class InstanceCreator extends BuildWrapper {
         }
     }
 
-    private static class DeploymentTypeMigrator extends AbstractConverter.Migrator<InstanceCreator> {
+    private static class DeploymentTypeMigrator extends AbstractConverter.DeferredMigrator<InstanceCreator> {
 
         public DeploymentTypeMigrator() {
             super(Version._4_0_3);
         }
 
         @Override
-        protected void migrate(InstanceCreator instanceCreator, Version olderVersion) {
+        protected boolean isMigrationNeeded(InstanceCreator instanceCreator) {
+            return StringUtils.isBlank(instanceCreator.getSlaveConfiguration().getBoxDeploymentType());
+        }
+
+        @Override
+        protected void migrateDeferred(InstanceCreator instanceCreator, Version olderVersion) throws IOException {
 
             final ProjectSlaveConfiguration slaveConfiguration = instanceCreator.getSlaveConfiguration();
 
@@ -210,10 +213,10 @@ public class InstanceCreator extends BuildWrapper {
 
                 if (StringUtils.isNotBlank(slaveConfiguration.getCloud())) {
 
-                    final Client client = ClientCache.getClient(slaveConfiguration.getCloud());
+                    final Client client = ClientCache.findOrCreateClient(slaveConfiguration.getCloud());
 
                     final DeploymentType deploymentType
-                        = new DeployBoxOrderServiceImpl(client).deploymentType(slaveConfiguration.getBox());
+                        = DeferredMigrations.getBoxDeploymentType(client, slaveConfiguration.getBox());
 
                     slaveConfiguration.boxDeploymentType = deploymentType.getValue();
 
@@ -0,0 +1,188 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.elasticbox.jenkins.util.CoalescingWriter;
+
+import hudson.XmlFile;
+
+import jenkins.model.Jenkins;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the instances of the ElasticBox slaves by instance ID and by slave name, the first tag of the instance of a
+ * slave. It is kept in JENKINS_HOME/elasticbox-instance-index.xml, so a slave that lost its instance URL is linked
+ * back to its instance without searching the instances of its workspace. The index is updated with the instances
+ * listed for a workspace: the ones listed the previous time and missing now are removed, and the first tag of every
+ * listed instance is compared with the indexed slave name.
+ */
+final class InstanceIndex {
+    private static final Logger LOGGER = Logger.getLogger(InstanceIndex.class.getName());
+
+    private static final Map<String, String> instanceIdToSlaveNameMap = new ConcurrentHashMap<String, String>();
+    private static final Map<String, String> slaveNameToInstanceIdMap = new ConcurrentHashMap<String, String>();
+
+    // <cloud name>|<workspace ID> -> IDs of the instances listed the last time
+    private static final Map<String, Set<String>> workspaceToInstanceIDsMap =
+            new ConcurrentHashMap<String, Set<String>>();
+
+    private static final long WRITE_DELAY = Long.getLong(InstanceIndex.class.getName() + ".writeDelay", 1000);
+
+    private static final CoalescingWriter writer = new CoalescingWriter(new Runnable() {
+        public void run() {
+            save();
+        }
+    }, WRITE_DELAY);
+
+    private static boolean loaded;
+
+    private InstanceIndex() {
+    }
+
+    /**
+     * Gets the ID of the instance tagged with the name of a slave.
+     *
+     * @param slaveName the name of the slave
+     * @return the ID of the instance or null if there is no known instance of the slave
+     */
+    static String getInstanceId(String slaveName) {
+        load();
+        return slaveNameToInstanceIdMap.get(slaveName);
+    }
+
+    static String getSlaveName(String instanceId) {
+        load();
+        return instanceIdToSlaveNameMap.get(instanceId);
+    }
+
+    /**
+     * Updates the index with the instances listed for a workspace.
+     *
+     * @param cloud the cloud of the workspace
+     * @param workspaceId the ID of the workspace
+     * @param instances all the instances of the workspace
+     */
+    static void update(ElasticBoxCloud cloud, String workspaceId, JSONArray instances) {
+        load();
+        Map<String, JSONObject> idToInstanceMap = new HashMap<String, JSONObject>(instances.size());
+        for (Object instance : instances) {
+            JSONObject instanceJson = (JSONObject) instance;
+            idToInstanceMap.put(instanceJson.getString("id"), instanceJson);
+        }
+
+        String key = cloud.name + '|' + workspaceId;
+        Set<String> previousInstanceIDs = workspaceToInstanceIDsMap.put(key, idToInstanceMap.keySet());
+        if (previousInstanceIDs == null) {
+            previousInstanceIDs = new HashSet<String>();
+        }
+
+        boolean changed = false;
+        for (String instanceId : previousInstanceIDs) {
+            if (!idToInstanceMap.containsKey(instanceId)) {
+                changed |= remove(instanceId);
+            }
+        }
+        // the first tag of a known instance may have changed as well
+        for (Map.Entry<String, JSONObject> entry : idToInstanceMap.entrySet()) {
+            JSONArray tags = entry.getValue().getJSONArray("tags");
+            if (tags.isEmpty()) {
+                changed |= remove(entry.getKey());
+            } else {
+                changed |= put(entry.getKey(), tags.getString(0));
+            }
+        }
+
+        if (changed) {
+            writer.schedule();
+        }
+    }
+
+    private static boolean put(String instanceId, String slaveName) {
+        String previousSlaveName = instanceIdToSlaveNameMap.put(instanceId, slaveName);
+        if (slaveName.equals(previousSlaveName)) {
+            return false;
+        }
+        if (previousSlaveName != null) {
+            slaveNameToInstanceIdMap.remove(previousSlaveName, instanceId);
+        }
+        slaveNameToInstanceIdMap.put(slaveName, instanceId);
+        return true;
+    }
+
+    private static boolean remove(String instanceId) {
+        String slaveName = instanceIdToSlaveNameMap.remove(instanceId);
+        if (slaveName != null) {
+            slaveNameToInstanceIdMap.remove(slaveName, instanceId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the file of the index or null if Jenkins is not running, the index is kept in memory only then
+     */
+    private static XmlFile getXmlFile() {
+        Jenkins jenkins = Jenkins.getInstance();
+        return jenkins != null
+                ? new XmlFile(Jenkins.XSTREAM, new File(jenkins.getRootDir(), "elasticbox-instance-index.xml")) : null;
+    }
+
+    private static synchronized void load() {
+        if (loaded) {
+            return;
+        }
+
+        loaded = true;
+        XmlFile xmlFile = getXmlFile();
+        if (xmlFile != null && xmlFile.exists()) {
+            try {
+                Map<String, String> index = (Map<String, String>) xmlFile.read();
+                for (Map.Entry<String, String> entry : index.entrySet()) {
+                    put(entry.getKey(), entry.getValue());
+                }
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Loaded the index of " + index.size() + " ElasticBox slave instances");
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Error loading the index of the ElasticBox slave instances, it will be "
+                        + "rebuilt", ex);
+            }
+        }
+    }
+
+    private static void save() {
+        XmlFile xmlFile = getXmlFile();
+        if (xmlFile == null) {
+            return;
+        }
+
+        try {
+            xmlFile.write(new HashMap<String, String>(instanceIdToSlaveNameMap));
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Error saving the index of the ElasticBox slave instances", ex);
+        }
+    }
+
+}
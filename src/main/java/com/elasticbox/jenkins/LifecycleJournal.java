@@ -0,0 +1,341 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.elasticbox.jenkins.util.CoalescingWriter;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Node;
+import hudson.util.AtomicFileWriter;
+
+import jenkins.model.Jenkins;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only journal of the deployment and termination of the ElasticBox slaves, kept in
+ * JENKINS_HOME/elasticbox-lifecycle.journal. When Jenkins starts, the journal is replayed and the slaves that were
+ * being deployed or terminated are handed back to {@link ElasticBoxSlaveHandler} and {@link TerminationPipeline} right
+ * away, instead of waiting for them to be found by scanning the instances of the workspaces. The events recorded
+ * within a short window are appended together in the background by a {@link CoalescingWriter}. The journal is
+ * compacted to the slaves with an operation in progress when Jenkins starts and whenever it grows over a number of
+ * lines.
+ */
+public final class LifecycleJournal {
+    private static final Logger LOGGER = Logger.getLogger(LifecycleJournal.class.getName());
+
+    private static final int COMPACTION_THRESHOLD =
+            Integer.getInteger(LifecycleJournal.class.getName() + ".compactionThreshold", 1000);
+    private static final long WRITE_DELAY = Long.getLong(LifecycleJournal.class.getName() + ".writeDelay", 1000);
+
+    private static final String SEPARATOR = "\t";
+    private static final String NONE = "-";
+
+    enum Event {
+        // the slave is waiting in the incoming queue to be deployed
+        DEPLOY,
+        // the deployment of the instance of the slave has been requested
+        SUBMIT,
+        // the slave is online
+        ONLINE,
+        // the deployment of the slave failed and it is not retried
+        FAILED,
+        // the instance of the slave is being terminated
+        TERMINATE,
+        // the slave has been removed
+        DELETE
+    }
+
+    static final class Entry {
+        private final Event event;
+        private final String instanceUrl;
+
+        Entry(Event event, String instanceUrl) {
+            this.event = event;
+            this.instanceUrl = instanceUrl;
+        }
+
+        Event getEvent() {
+            return event;
+        }
+
+        String getInstanceUrl() {
+            return instanceUrl;
+        }
+    }
+
+    /**
+     * The slaves with an operation in progress according to the events of the journal, and the number of lines of
+     * the journal. It is not thread safe.
+     */
+    static final class State {
+        // last event of each slave with an operation in progress
+        private final Map<String, Entry> inProgress = new LinkedHashMap<String, Entry>();
+        private int lines;
+
+        void apply(Event event, String nodeName, String instanceUrl) {
+            if (event == Event.ONLINE || event == Event.FAILED || event == Event.DELETE) {
+                inProgress.remove(nodeName);
+            } else {
+                inProgress.put(nodeName, new Entry(event, instanceUrl));
+            }
+            lines++;
+        }
+
+        void read(BufferedReader reader) throws IOException {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = StringUtils.split(line, SEPARATOR);
+                if (fields.length != 4) {
+                    // a line cut by a crash
+                    continue;
+                }
+                try {
+                    apply(Event.valueOf(fields[1]), fields[2], NONE.equals(fields[3]) ? null : fields[3]);
+                } catch (IllegalArgumentException ex) {
+                    LOGGER.warning("Ignoring invalid line of the lifecycle journal of the ElasticBox slaves: " + line);
+                }
+            }
+        }
+
+        Map<String, Entry> getInProgress() {
+            return inProgress;
+        }
+
+        int getLines() {
+            return lines;
+        }
+
+        boolean needsCompaction(int threshold) {
+            return lines > threshold && lines > 2 * inProgress.size();
+        }
+
+        /**
+         * Gets the lines of the compacted journal, one for each slave with an operation in progress.
+         */
+        String compact() {
+            StringBuilder compactedLines = new StringBuilder();
+            for (Map.Entry<String, Entry> entry : inProgress.entrySet()) {
+                compactedLines.append(toLine(entry.getValue().event, entry.getKey(), entry.getValue().instanceUrl));
+            }
+            lines = inProgress.size();
+            return compactedLines.toString();
+        }
+    }
+
+    // guarded by the class lock
+    private static final State state = new State();
+
+    // lines recorded but not written yet, guarded by the class lock
+    private static StringBuilder pendingLines = new StringBuilder();
+
+    private static final CoalescingWriter writer = new CoalescingWriter(new Runnable() {
+        public void run() {
+            write();
+        }
+    }, WRITE_DELAY);
+
+    // held while the file is written, always taken before the class lock
+    private static final Object writeLock = new Object();
+
+    private LifecycleJournal() {
+    }
+
+    static void record(Event event, ElasticBoxSlave slave) {
+        record(event, slave.getNodeName(), slave.getInstanceUrl());
+    }
+
+    private static void record(Event event, String nodeName, String instanceUrl) {
+        synchronized (LifecycleJournal.class) {
+            state.apply(event, nodeName, instanceUrl);
+            pendingLines.append(toLine(event, nodeName, instanceUrl));
+        }
+        writer.schedule();
+    }
+
+    private static void write() {
+        synchronized (writeLock) {
+            String compactedLines = null;
+            int uncompactedLines = 0;
+            String newLines;
+            synchronized (LifecycleJournal.class) {
+                if (state.needsCompaction(COMPACTION_THRESHOLD)) {
+                    uncompactedLines = state.getLines();
+                    compactedLines = state.compact();
+                }
+                newLines = pendingLines.toString();
+                pendingLines = new StringBuilder();
+            }
+
+            try {
+                if (compactedLines != null) {
+                    // the compacted journal already has the effect of the pending lines
+                    compact(compactedLines);
+                } else if (newLines.length() > 0) {
+                    append(newLines);
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Error writing the lifecycle journal of the ElasticBox slaves, it will be "
+                        + "retried", ex);
+                synchronized (LifecycleJournal.class) {
+                    // the lines are written before the ones recorded in the meantime
+                    pendingLines.insert(0, newLines);
+                    if (compactedLines != null) {
+                        state.lines += uncompactedLines - state.getInProgress().size();
+                    }
+                }
+                writer.schedule();
+            }
+        }
+    }
+
+    // called with the write lock held
+    private static void append(String newLines) throws IOException {
+        Writer appender = new OutputStreamWriter(new FileOutputStream(getFile(), true), "UTF-8");
+        try {
+            appender.write(newLines);
+        } finally {
+            appender.close();
+        }
+    }
+
+    private static String toLine(Event event, String nodeName, String instanceUrl) {
+        return System.currentTimeMillis() + SEPARATOR + event + SEPARATOR + nodeName + SEPARATOR
+                + (instanceUrl != null ? instanceUrl : NONE) + '\n';
+    }
+
+    private static File getFile() {
+        return new File(Jenkins.getInstance().getRootDir(), "elasticbox-lifecycle.journal");
+    }
+
+    // called with the write lock held
+    private static void compact(String compactedLines) throws IOException {
+        AtomicFileWriter compactedWriter = new AtomicFileWriter(getFile());
+        try {
+            compactedWriter.write(compactedLines);
+            compactedWriter.commit();
+        } finally {
+            compactedWriter.abort();
+        }
+    }
+
+    private static void read(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            state.read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void replay() {
+        Map<ElasticBoxSlave, Entry> slaveToEntryMap = new LinkedHashMap<ElasticBoxSlave, Entry>();
+        synchronized (writeLock) {
+            File file = getFile();
+            if (!file.exists()) {
+                return;
+            }
+
+            String compactedLines;
+            synchronized (LifecycleJournal.class) {
+                try {
+                    read(file);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Error reading the lifecycle journal of the ElasticBox slaves", ex);
+                }
+
+                // the slaves that don't exist anymore have nothing to resume
+                Jenkins jenkins = Jenkins.getInstance();
+                Iterator<Map.Entry<String, Entry>> iter = state.getInProgress().entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<String, Entry> entry = iter.next();
+                    Node node = jenkins.getNode(entry.getKey());
+                    if (node instanceof ElasticBoxSlave) {
+                        slaveToEntryMap.put((ElasticBoxSlave) node, entry.getValue());
+                    } else {
+                        iter.remove();
+                    }
+                }
+
+                compactedLines = state.compact();
+                pendingLines = new StringBuilder();
+            }
+
+            try {
+                compact(compactedLines);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Error compacting the lifecycle journal of the ElasticBox slaves", ex);
+            }
+        }
+
+        if (!slaveToEntryMap.isEmpty()) {
+            LOGGER.info(MessageFormat.format("Resuming the deployment or termination of {0} ElasticBox slaves",
+                    slaveToEntryMap.size()));
+        }
+        for (Map.Entry<ElasticBoxSlave, Entry> entry : slaveToEntryMap.entrySet()) {
+            resume(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void resume(final ElasticBoxSlave slave, Entry entry) {
+        if (slave.getInstanceUrl() == null && entry.instanceUrl != null) {
+            // the slave may not have been written before Jenkins stopped
+            slave.setInstanceUrl(entry.instanceUrl);
+        }
+
+        switch (entry.event) {
+            case DEPLOY:
+            case SUBMIT:
+                if (slave.getInstanceUrl() == null) {
+                    // the deployment metadata resolved before the restart is lost if it wasn't applied yet
+                    slave.requestDeploymentMetadata();
+                    ElasticBoxSlaveHandler.submit(slave);
+                } else {
+                    ElasticBoxExecutor.threadPool.submit(new Runnable() {
+                        public void run() {
+                            try {
+                                ElasticBoxSlaveHandler.resumeSubmittedRequest(slave);
+                            } catch (IOException ex) {
+                                LOGGER.log(Level.SEVERE, "Error resuming the deployment of slave "
+                                        + slave.getNodeName(), ex);
+                            }
+                        }
+                    });
+                }
+                break;
+
+            case TERMINATE:
+                ElasticBoxSlaveHandler.addToTerminatedQueue(slave);
+                break;
+
+            default:
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import hudson.Extension;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.Cloud;
+
+import jenkins.model.Jenkins;
+
+import net.sf.json.JSONObject;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Computes in one pass per cloud how many slaves of each slave configuration can be terminated without going below
+ * its minimum number of instances. The retention strategies of the ElasticBox slaves take their share of that budget
+ * here, instead of each one fetching the active instances of its cloud and scanning all the nodes.
+ */
+@Extension
+public final class RetentionCoordinator extends ElasticBoxExecutor.Workload {
+
+    // cloud name -> slave configuration ID -> number of slaves that can still be terminated until the next round
+    private static final ConcurrentMap<String, Map<String, AtomicInteger>> cloudToTerminationBudgetsMap =
+            new ConcurrentHashMap<String, Map<String, AtomicInteger>>();
+
+    /**
+     * Takes one slave off the termination budget of a slave configuration, so that the slaves terminated at the same
+     * time don't take the configuration below its minimum number of instances.
+     *
+     * @param cloud the cloud of the slave
+     * @param slaveConfigId the ID of the slave configuration of the slave
+     * @return true if the slave can be terminated, false if it must be kept or if the active instances of the cloud
+     *     could not be fetched yet
+     */
+    static boolean acquireTermination(ElasticBoxCloud cloud, String slaveConfigId) {
+        if (cloud == null) {
+            return false;
+        }
+        Map<String, AtomicInteger> terminationBudgets = cloudToTerminationBudgetsMap.get(cloud.name);
+        if (terminationBudgets == null) {
+            return false;
+        }
+        AtomicInteger terminationBudget = terminationBudgets.get(slaveConfigId);
+        return terminationBudget != null && acquire(terminationBudget);
+    }
+
+    static boolean acquire(AtomicInteger terminationBudget) {
+        for (int budget = terminationBudget.get(); budget > 0; budget = terminationBudget.get()) {
+            if (terminationBudget.compareAndSet(budget, budget - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets how many slaves of a slave configuration can be terminated.
+     *
+     * @param activeInstances the number of active instances of the cloud
+     * @param configActiveInstances the number of active instances of the slaves of the configuration
+     * @param minInstances the minimum number of instances of the configuration
+     * @return the number of slaves that can be terminated
+     */
+    static int getTerminationBudget(int activeInstances, int configActiveInstances, int minInstances) {
+        return Math.max(0, Math.min(activeInstances, configActiveInstances) - minInstances);
+    }
+
+    @Override
+    protected ElasticBoxExecutor.ExecutionType getExecutionType() {
+        return ElasticBoxExecutor.ExecutionType.ASYNC;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException {
+        Map<ElasticBoxCloud, Map<AbstractSlaveConfiguration, Set<String>>> cloudToConfigInstanceIDsMap =
+                new HashMap<ElasticBoxCloud, Map<AbstractSlaveConfiguration, Set<String>>>();
+
+        for (Node node : Jenkins.getInstance().getNodes()) {
+            if (node instanceof ElasticBoxSlave) {
+                ElasticBoxSlave slave = (ElasticBoxSlave) node;
+                AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+                if (slaveConfig == null || slaveConfig.getMinInstances() <= 0) {
+                    continue;
+                }
+
+                ElasticBoxCloud cloud;
+                try {
+                    cloud = slave.getCloud();
+                } catch (IOException ex) {
+                    log(Level.SEVERE, ex.getMessage(), ex);
+                    continue;
+                }
+                if (cloud == null) {
+                    continue;
+                }
+
+                Map<AbstractSlaveConfiguration, Set<String>> configToInstanceIDsMap =
+                        cloudToConfigInstanceIDsMap.get(cloud);
+                if (configToInstanceIDsMap == null) {
+                    configToInstanceIDsMap = new HashMap<AbstractSlaveConfiguration, Set<String>>();
+                    cloudToConfigInstanceIDsMap.put(cloud, configToInstanceIDsMap);
+                }
+                Set<String> instanceIDs = configToInstanceIDsMap.get(slaveConfig);
+                if (instanceIDs == null) {
+                    instanceIDs = new HashSet<String>();
+                    configToInstanceIDsMap.put(slaveConfig, instanceIDs);
+                }
+                if (slave.getInstanceUrl() != null) {
+                    instanceIDs.add(slave.getInstanceId());
+                }
+            }
+        }
+
+        SlaveInstanceManager slaveInstanceManager = new SlaveInstanceManager();
+        for (Cloud cloud : Jenkins.getInstance().clouds) {
+            if (!(cloud instanceof ElasticBoxCloud)) {
+                continue;
+            }
+
+            ElasticBoxCloud ebCloud = (ElasticBoxCloud) cloud;
+            Map<AbstractSlaveConfiguration, Set<String>> configToInstanceIDsMap =
+                    cloudToConfigInstanceIDsMap.get(ebCloud);
+            if (configToInstanceIDsMap == null) {
+                cloudToTerminationBudgetsMap.put(ebCloud.name, new HashMap<String, AtomicInteger>());
+                continue;
+            }
+
+            List<JSONObject> activeInstances;
+            try {
+                activeInstances = slaveInstanceManager.getInstances(ebCloud);
+            } catch (IOException ex) {
+                // cannot decide whether the slaves should be terminated, leave them alone until the next round
+                log(Level.SEVERE, MessageFormat.format("Error fetching the active instances of ElasticBox cloud {0}",
+                        ebCloud.getDisplayName()), ex);
+                cloudToTerminationBudgetsMap.remove(ebCloud.name);
+                continue;
+            }
+
+            Set<String> activeInstanceIDs = new HashSet<String>(activeInstances.size());
+            for (JSONObject instance : activeInstances) {
+                activeInstanceIDs.add(instance.getString("id"));
+            }
+
+            Map<String, AtomicInteger> terminationBudgets = new HashMap<String, AtomicInteger>();
+            for (Map.Entry<AbstractSlaveConfiguration, Set<String>> entry : configToInstanceIDsMap.entrySet()) {
+                Set<String> configActiveInstanceIDs = new HashSet<String>(entry.getValue());
+                configActiveInstanceIDs.retainAll(activeInstanceIDs);
+                int terminationBudget = getTerminationBudget(activeInstances.size(), configActiveInstanceIDs.size(),
+                        entry.getKey().getMinInstances());
+                terminationBudgets.put(entry.getKey().getId(), new AtomicInteger(terminationBudget));
+            }
+            cloudToTerminationBudgetsMap.put(ebCloud.name, terminationBudgets);
+        }
+    }
+
+}
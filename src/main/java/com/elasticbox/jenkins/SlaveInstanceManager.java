@@ -28,7 +28,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,6 +40,8 @@ public class SlaveInstanceManager {
     private final Map<String, ElasticBoxSlave> instanceIdToSlaveMap;
     private Map<ElasticBoxSlave, JSONObject> slaveToInstanceMap;
     private final Map<ElasticBoxCloud, List<JSONObject>> cloudToInstancesMap;
+    // slaves without instance URL by name, they are linked to their instances as the workspaces are listed
+    private final Map<String, ElasticBoxSlave> orphanSlaves;
     private List<ElasticBoxSlave> slavesWithoutInstance;
     private final Map<ElasticBoxCloud, Set<String>> cloudToWorkspaceIDsMap;
     private boolean allFetched = false;
@@ -49,6 +50,7 @@ public class SlaveInstanceManager {
         instanceIdToSlaveMap = new HashMap<String, ElasticBoxSlave>();
         cloudToInstancesMap = new HashMap<ElasticBoxCloud, List<JSONObject>>();
         cloudToWorkspaceIDsMap = new HashMap<ElasticBoxCloud, Set<String>>();
+        orphanSlaves = new HashMap<String, ElasticBoxSlave>();
         for (Node node : Jenkins.getInstance().getNodes()) {
             if (node instanceof ElasticBoxSlave) {
                 final ElasticBoxSlave slave = (ElasticBoxSlave) node;
@@ -69,51 +71,16 @@ public class SlaveInstanceManager {
                 if (slave.getInstanceUrl() != null) {
                     String instanceId = slave.getInstanceId();
                     instanceIdToSlaveMap.put(instanceId, slave);
-                } else {
-                    if (slavesWithoutInstance == null) {
-                        slavesWithoutInstance = new ArrayList<>();
-                    }
-                    slavesWithoutInstance.add(slave);
-                }
-            }
-        }
-
-        if (slavesWithoutInstance != null) {
-
-            ElasticBoxCloud cloud = null;
-            String wks = null;
-            JSONArray instances = null;
-            AbstractSlaveConfiguration config;
-
-            Iterator<ElasticBoxSlave> iterator = slavesWithoutInstance.iterator();
-            while (iterator.hasNext() ) {
-
-                ElasticBoxSlave slave = iterator.next();
-                config = slave.getSlaveConfiguration();
-
-                if ( slave.getCloud() != null && config != null) {
-                    if (!slave.getCloud().equals(cloud) && !config.getWorkspace().equals(wks)) {
-                        cloud = slave.getCloud();
-                        wks = slave.getSlaveConfiguration().getWorkspace();
-                        instances = cloud.getClient().getInstances(wks);
-                    }
-                    for (Object instance : instances) {
-                        JSONObject instanceJson = (JSONObject) instance;
-                        JSONArray tags = instanceJson.getJSONArray("tags");
-
-                        // If the instance corresponds to a Jenkins slave, first tag will match the slave name:
-                        if (tags.size() > 0 && slave.getNodeName().equals(tags.getString(0) )) {
-                            String instanceId = instanceJson.getString("id");
-                            if (slave.getInstanceUrl() == null) {
-                                final String url = cloud.getClient().getInstanceUrl(instanceId);
-                                slave.setInstanceUrl(url);
-                                LOGGER.info("Linked instance [" + url + "] with orphan slave - " + slave);
-                            }
-                            iterator.remove();
-                            instanceIdToSlaveMap.put(instanceId, slave);
-                            break;
-                        }
+                } else if (cloud != null && slave.getSlaveConfiguration() != null) {
+                    // the index knows the instances tagged with the name of the slave in the previous listings
+                    String instanceId = InstanceIndex.getInstanceId(slave.getNodeName());
+                    if (instanceId != null && !instanceIdToSlaveMap.containsKey(instanceId)) {
+                        linkOrphanSlave(slave, cloud, instanceId);
+                    } else {
+                        orphanSlaves.put(slave.getNodeName(), slave);
                     }
+                } else {
+                    orphanSlaves.put(slave.getNodeName(), slave);
                 }
             }
         }
@@ -123,11 +90,18 @@ public class SlaveInstanceManager {
             sb.append("EB Slaves initialized:");
             sb.append("\ninstanceIdToSlaveMap=").append(instanceIdToSlaveMap);
             sb.append("\ncloudToWorkspaceIDsMap=").append(cloudToWorkspaceIDsMap);
-            sb.append("\nslavesWithoutInstance=").append(slavesWithoutInstance);
+            sb.append("\norphanSlaves=").append(orphanSlaves.values());
             LOGGER.finest(sb.toString());
         }
     }
 
+    private void linkOrphanSlave(ElasticBoxSlave slave, ElasticBoxCloud cloud, String instanceId) throws IOException {
+        final String url = cloud.getClient().getInstanceUrl(instanceId);
+        slave.setInstanceUrl(url);
+        LOGGER.info("Linked instance [" + url + "] with orphan slave - " + slave);
+        instanceIdToSlaveMap.put(instanceId, slave);
+    }
+
     public ElasticBoxSlave getSlave(String instanceId) {
         return instanceIdToSlaveMap.get(instanceId);
     }
@@ -150,6 +124,7 @@ public class SlaveInstanceManager {
 
             invalidInstanceIdToSlaveMap.keySet().removeAll(validInstanceIDs);
             slavesWithoutInstance = new ArrayList<ElasticBoxSlave>(invalidInstanceIdToSlaveMap.values());
+            slavesWithoutInstance.addAll(orphanSlaves.values());
         }
         return slavesWithoutInstance;
     }
@@ -162,9 +137,20 @@ public class SlaveInstanceManager {
                 instances = new ArrayList<JSONObject>();
                 Client client = cloud.getClient();
                 for (String workspaceId : cloudToWorkspaceIDsMap.get(cloud)) {
-                    for (Object instance : client.getInstances(workspaceId)) {
+                    JSONArray workspaceInstances = client.getInstances(workspaceId);
+                    InstanceIndex.update(cloud, workspaceId, workspaceInstances);
+                    for (Object instance : workspaceInstances) {
                         JSONObject instanceJson = (JSONObject) instance;
                         String instanceId = instanceJson.getString("id");
+                        if (!instanceIdToSlaveMap.containsKey(instanceId) && !orphanSlaves.isEmpty()) {
+                            // if the instance corresponds to a Jenkins slave, first tag will match the slave name
+                            JSONArray tags = instanceJson.getJSONArray("tags");
+                            ElasticBoxSlave slave = tags.isEmpty() ? null : orphanSlaves.get(tags.getString(0));
+                            if (slave != null && cloud.equals(slave.getCloud())) {
+                                orphanSlaves.remove(slave.getNodeName());
+                                linkOrphanSlave(slave, cloud, instanceId);
+                            }
+                        }
                         if (instanceIdToSlaveMap.containsKey(instanceId)) {
                             instances.add(instanceJson);
                         }
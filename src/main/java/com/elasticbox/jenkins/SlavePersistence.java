@@ -0,0 +1,121 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.elasticbox.jenkins.util.CoalescingWriter;
+
+import hudson.XmlFile;
+import hudson.model.Queue;
+
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the changed ElasticBox slaves to their own node configuration files instead of saving the whole Jenkins
+ * configuration. The changes made within a short window are written together in the background, and the pending
+ * ones are written when Jenkins shuts down.
+ */
+public final class SlavePersistence {
+    private static final Logger LOGGER = Logger.getLogger(SlavePersistence.class.getName());
+
+    private static final long WRITE_DELAY = Long.getLong(SlavePersistence.class.getName() + ".writeDelay", 5000);
+
+    private static final Set<ElasticBoxSlave> dirtySlaves =
+            Collections.newSetFromMap(new ConcurrentHashMap<ElasticBoxSlave, Boolean>());
+
+    private static final CoalescingWriter writer = new CoalescingWriter(new Runnable() {
+        public void run() {
+            flush();
+        }
+    }, WRITE_DELAY);
+
+    private static final AtomicLong requestedSaves = new AtomicLong();
+    private static final AtomicLong nodeWrites = new AtomicLong();
+
+    private SlavePersistence() {
+    }
+
+    static void markDirty(ElasticBoxSlave slave) {
+        requestedSaves.incrementAndGet();
+        dirtySlaves.add(slave);
+        writer.schedule();
+    }
+
+    private static void flush() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return;
+        }
+
+        int written = 0;
+        for (Iterator<ElasticBoxSlave> iter = dirtySlaves.iterator(); iter.hasNext();) {
+            ElasticBoxSlave slave = iter.next();
+            iter.remove();
+            try {
+                if (writeNode(jenkins, slave)) {
+                    written++;
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, MessageFormat.format("Error saving slave {0}", slave.getNodeName()), ex);
+            }
+        }
+        nodeWrites.addAndGet(written);
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(MessageFormat.format("Saved {0} ElasticBox slaves. {1} save requests written with {2} node "
+                    + "writes so far", written, requestedSaves.get(), nodeWrites.get()));
+        }
+    }
+
+    /**
+     * Writes the configuration file of a slave the same way Jenkins does when it saves its nodes, Jenkins.updateNode
+     * is not available in the Jenkins version required by this plugin.
+     *
+     * @return false if the slave has been removed in the meantime, nothing is written then
+     */
+    private static boolean writeNode(final Jenkins jenkins, final ElasticBoxSlave slave) throws IOException {
+        final AtomicBoolean written = new AtomicBoolean();
+        final IOException[] error = new IOException[1];
+        // the queue lock keeps the slave from being removed while its file is written
+        Queue.withLock(new Runnable() {
+            public void run() {
+                if (jenkins.getNode(slave.getNodeName()) != slave) {
+                    return;
+                }
+                File nodeDir = new File(new File(jenkins.getRootDir(), "nodes"), slave.getNodeName());
+                try {
+                    new XmlFile(Jenkins.XSTREAM, new File(nodeDir, "config.xml")).write(slave);
+                    written.set(true);
+                } catch (IOException ex) {
+                    error[0] = ex;
+                }
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return written.get();
+    }
+
+}
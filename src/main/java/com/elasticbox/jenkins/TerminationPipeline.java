@@ -0,0 +1,353 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.elasticbox.Client;
+import com.elasticbox.ClientException;
+import com.elasticbox.jenkins.util.ClientCache;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+
+import net.sf.json.JSONObject;
+
+import org.apache.commons.httpclient.HttpStatus;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Terminates and deletes the instances of the ElasticBox slaves of a cloud, and removes the slaves once their
+ * instances are gone. Each slave is handled once at a time no matter how many times it is submitted. The instances
+ * being handled are fetched with one request per workspace on every round, the operations run with bounded
+ * concurrency and failed operations are retried later with an exponential backoff.
+ */
+final class TerminationPipeline {
+    private static final Logger LOGGER = Logger.getLogger(TerminationPipeline.class.getName());
+
+    private static final int MAX_CONCURRENCY =
+            Integer.getInteger(TerminationPipeline.class.getName() + ".maxConcurrency", 8);
+    private static final int MAX_ATTEMPTS = Integer.getInteger(TerminationPipeline.class.getName() + ".maxAttempts", 5);
+    private static final long POLL_INTERVAL =
+            Long.getLong(TerminationPipeline.class.getName() + ".pollInterval", TimeUnit.SECONDS.toMillis(15));
+    private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(10);
+    private static final long SUBMIT_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private static final ConcurrentMap<String, TerminationPipeline> pipelines =
+            new ConcurrentHashMap<String, TerminationPipeline>();
+
+    private final String cloudName;
+    private final ScheduledThreadPoolExecutor executor;
+    // node name -> task
+    private final ConcurrentMap<String, Task> tasks = new ConcurrentHashMap<String, Task>();
+    private final AtomicBoolean roundScheduled = new AtomicBoolean();
+
+    TerminationPipeline(String cloudName) {
+        this.cloudName = cloudName;
+        executor = new ScheduledThreadPoolExecutor(MAX_CONCURRENCY,
+                new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+    }
+
+    private static final class Task {
+        private final ElasticBoxSlave slave;
+        private final AtomicBoolean inProgress = new AtomicBoolean();
+        private volatile int failures;
+        private volatile long nextAttempt;
+
+        Task(ElasticBoxSlave slave) {
+            this.slave = slave;
+        }
+    }
+
+    private enum Result {
+        DONE,
+        WAITING,
+        FAILED
+    }
+
+    static TerminationPipeline get(ElasticBoxCloud cloud) {
+        TerminationPipeline pipeline = pipelines.get(cloud.name);
+        if (pipeline == null) {
+            TerminationPipeline newPipeline = new TerminationPipeline(cloud.name);
+            pipeline = pipelines.putIfAbsent(cloud.name, newPipeline);
+            if (pipeline == null) {
+                pipeline = newPipeline;
+            } else {
+                newPipeline.executor.shutdown();
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * Submits a slave to be terminated and removed by the pipeline of its cloud.
+     *
+     * @param slave the slave to terminate
+     * @return true if the slave is submitted, false if it is already being handled or its cloud cannot be found
+     */
+    static boolean submit(ElasticBoxSlave slave) {
+        ElasticBoxCloud cloud;
+        try {
+            cloud = slave.getCloud();
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+            return false;
+        }
+        return cloud != null && get(cloud).add(slave);
+    }
+
+    /**
+     * Shuts down the pipelines of the clouds that have been removed or renamed. The slaves of those clouds cannot
+     * reach their instances anymore, so the tasks left in these pipelines are dropped.
+     *
+     * @param cloudNames the names of the ElasticBox clouds currently configured
+     */
+    static void retainClouds(Collection<String> cloudNames) {
+        for (Iterator<Map.Entry<String, TerminationPipeline>> iter = pipelines.entrySet().iterator();
+                iter.hasNext();) {
+            Map.Entry<String, TerminationPipeline> entry = iter.next();
+            if (!cloudNames.contains(entry.getKey())) {
+                iter.remove();
+                TerminationPipeline pipeline = entry.getValue();
+                pipeline.shutdown();
+                if (!pipeline.tasks.isEmpty()) {
+                    LOGGER.warning(MessageFormat.format("ElasticBox cloud {0} has been removed, {1} slaves being "
+                            + "terminated in it are left alone", entry.getKey(), pipeline.tasks.size()));
+                }
+            }
+        }
+    }
+
+    // the instance URL of a slave is set in the middle of its deployment, the node name never changes
+    static String getKey(ElasticBoxSlave slave) {
+        return slave.getNodeName();
+    }
+
+    boolean add(ElasticBoxSlave slave) {
+        if (tasks.putIfAbsent(getKey(slave), new Task(slave)) == null) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Slave submitted for termination - " + slave.getNodeName());
+            }
+            scheduleRound(SUBMIT_DELAY);
+            return true;
+        }
+        return false;
+    }
+
+    int size() {
+        return tasks.size();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void scheduleRound(long delay) {
+        if (roundScheduled.compareAndSet(false, true)) {
+            executor.schedule(new Runnable() {
+                public void run() {
+                    roundScheduled.set(false);
+                    processRound();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void processRound() {
+        long now = System.currentTimeMillis();
+        List<Task> dueTasks = new ArrayList<Task>();
+        for (Task task : tasks.values()) {
+            if (task.nextAttempt <= now && !task.inProgress.get()) {
+                dueTasks.add(task);
+            }
+        }
+
+        if (!dueTasks.isEmpty()) {
+            Map<String, JSONObject> instances = null;
+            try {
+                instances = fetchInstances(dueTasks);
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, MessageFormat.format("Error fetching the instances of the slaves being "
+                        + "terminated in ElasticBox cloud {0}", cloudName), ex);
+            }
+
+            for (final Task task : dueTasks) {
+                if (instances == null) {
+                    retryLater(task);
+                } else if (task.inProgress.compareAndSet(false, true)) {
+                    final JSONObject instance = task.slave.getInstanceUrl() != null
+                            ? instances.get(task.slave.getInstanceId()) : null;
+                    executor.submit(new Runnable() {
+                        public void run() {
+                            try {
+                                process(task, instance);
+                            } finally {
+                                task.inProgress.set(false);
+                            }
+                        }
+                    });
+                }
+            }
+        }
+
+        if (!tasks.isEmpty()) {
+            scheduleRound(POLL_INTERVAL);
+        }
+    }
+
+    private Map<String, JSONObject> fetchInstances(List<Task> dueTasks) throws IOException {
+        Client client = ClientCache.findOrCreateClient(cloudName);
+        Map<String, List<String>> workspaceToInstanceIDsMap = new HashMap<String, List<String>>();
+        Map<String, JSONObject> instances = new HashMap<String, JSONObject>();
+        for (Task task : dueTasks) {
+            ElasticBoxSlave slave = task.slave;
+            if (slave.getInstanceUrl() == null) {
+                continue;
+            }
+
+            AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+            if (slaveConfig == null) {
+                try {
+                    instances.put(slave.getInstanceId(), client.getInstance(slave.getInstanceId()));
+                } catch (ClientException ex) {
+                    if (ex.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                        throw ex;
+                    }
+                }
+                continue;
+            }
+
+            List<String> instanceIDs = workspaceToInstanceIDsMap.get(slaveConfig.getWorkspace());
+            if (instanceIDs == null) {
+                instanceIDs = new ArrayList<String>();
+                workspaceToInstanceIDsMap.put(slaveConfig.getWorkspace(), instanceIDs);
+            }
+            instanceIDs.add(slave.getInstanceId());
+        }
+
+        for (Map.Entry<String, List<String>> entry : workspaceToInstanceIDsMap.entrySet()) {
+            for (Object instance : client.getInstances(entry.getKey(), entry.getValue())) {
+                JSONObject instanceJson = (JSONObject) instance;
+                instances.put(instanceJson.getString("id"), instanceJson);
+            }
+        }
+        return instances;
+    }
+
+    private void process(Task task, JSONObject instance) {
+        ElasticBoxSlave slave = task.slave;
+        Result result;
+        try {
+            result = step(slave, instance);
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Error terminating the instance of ElasticBox slave - " + slave.getNodeName(),
+                    ex);
+            result = Result.FAILED;
+        }
+
+        switch (result) {
+            case DONE:
+                tasks.remove(getKey(slave));
+                ElasticBoxSlaveHandler.removeFromTerminatedQueue(slave);
+                ElasticBoxSlaveHandler.removeSlave(slave);
+                break;
+
+            case WAITING:
+                task.failures = 0;
+                task.nextAttempt = System.currentTimeMillis() + POLL_INTERVAL;
+                break;
+
+            default:
+                retryLater(task);
+        }
+    }
+
+    private Result step(ElasticBoxSlave slave, JSONObject instance) throws IOException {
+        if (slave.getInstanceUrl() == null || instance == null) {
+            // there is no instance anymore
+            return Result.DONE;
+        }
+
+        String state = instance.getString("state");
+        if (Client.InstanceState.PROCESSING.equals(state)) {
+            return Result.WAITING;
+        }
+
+        Client client = ClientCache.findOrCreateClient(cloudName);
+        if (Client.InstanceState.UNAVAILABLE.equals(state)) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Slave is unavailable - " + slave.getNodeName());
+            }
+            client.forceTerminate(instance.getString("id"));
+            return Result.WAITING;
+        }
+
+        String event = instance.getJSONObject("operation").getString("event");
+        if (Client.TERMINATE_OPERATIONS.contains(event)) {
+            if (slave.isRemovableFromCloud()) {
+                LOGGER.info("Deleting slave - " + slave.getNodeName());
+                try {
+                    slave.delete();
+                } catch (ClientException ex) {
+                    if (ex.getStatusCode() == HttpStatus.SC_CONFLICT) {
+                        return Result.WAITING;
+                    } else if (ex.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                        throw ex;
+                    }
+                }
+            }
+            return Result.DONE;
+        }
+
+        if (slave.maxDeleteAttemptsReached()) {
+            return Result.DONE;
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Terminating not required slave - " + slave.getNodeName());
+        }
+        slave.terminate();
+        return Result.WAITING;
+    }
+
+    private void retryLater(Task task) {
+        task.failures++;
+        long delay = Math.min(POLL_INTERVAL << Math.min(task.failures, 10), MAX_RETRY_DELAY);
+        task.nextAttempt = System.currentTimeMillis() + delay;
+        if (task.failures == MAX_ATTEMPTS) {
+            String instanceLocation = task.slave.getInstanceUrl();
+            try {
+                instanceLocation = Client.getPageUrl(task.slave.getCloud().getEndpointUrl(), instanceLocation);
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, ex.getMessage(), ex);
+            }
+            LOGGER.severe(MessageFormat.format("Cannot terminate ElasticBox slave {0} after {1} attempts, it will be "
+                    + "retried every {2} minutes. Please terminate it manually at {3}", task.slave.getDisplayName(),
+                    MAX_ATTEMPTS, TimeUnit.MILLISECONDS.toMinutes(MAX_RETRY_DELAY), instanceLocation));
+        }
+    }
+
+}
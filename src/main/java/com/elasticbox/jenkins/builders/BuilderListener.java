@@ -18,6 +18,8 @@ import hudson.ExtensionPoint;
 import hudson.model.AbstractBuild;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Receives notification about ElasticBox instances/boxes that were deployed/managed by the ElasticBox build steps.
@@ -28,6 +30,31 @@ public abstract class BuilderListener implements ExtensionPoint {
     public abstract void onDeploying(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud)
             throws IOException, InterruptedException;
 
+    /**
+     * Called when a build step deploys an instance. By default it calls
+     * {@link #onDeploying(AbstractBuild, String, ElasticBoxCloud)}.
+     *
+     * @param workspace the ID of the workspace of the instance
+     * @param builderId the ID of the build step
+     * @param boxVersion the ID of the box version deployed
+     */
+    public void onDeploying(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud, String workspace,
+                            String builderId, String boxVersion) throws IOException, InterruptedException {
+        onDeploying(build, instanceId, cloud);
+    }
+
+    /**
+     * Gets the instances deployed by a build step in previous builds that the build step can update in place instead
+     * of deploying new instances.
+     *
+     * @param builderId the ID of the build step
+     * @return the box version IDs of the instances by instance ID, none by default
+     */
+    public Map<String, String> getReusableInstances(AbstractBuild<?, ?> build, ElasticBoxCloud cloud,
+                                                    String builderId) {
+        return Collections.emptyMap();
+    }
+
     public abstract void onTerminating(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud)
             throws IOException, InterruptedException;
 
@@ -23,6 +23,7 @@ import com.elasticbox.jenkins.ElasticBoxCloud;
 import com.elasticbox.jenkins.DescriptorHelper;
 import com.elasticbox.jenkins.ElasticBoxSlaveHandler;
 import com.elasticbox.jenkins.migration.AbstractConverter;
+import com.elasticbox.jenkins.migration.DeferredMigrations;
 import com.elasticbox.jenkins.migration.Version;
 import com.elasticbox.jenkins.model.box.AbstractBox;
 import com.elasticbox.jenkins.model.instance.Instance;
@@ -77,10 +78,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -90,6 +93,8 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
 
     private static final Logger logger = Logger.getLogger(DeployBox.class.getName());
 
+    private static final AtomicInteger reclaimedInstances = new AtomicInteger();
+
     private static final String ACTION_NONE = "none";
     private static final String ACTION_SKIP = "skip";
     private static final String ACTION_RECONFIGURE = Client.InstanceOperation.RECONFIGURE;
@@ -203,6 +208,65 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
         return new Result(instance, existing);
     }
 
+    /**
+     * Reconfigures the instances that this build step deployed in previous builds and that a {@link BuilderListener}
+     * offers for reuse, if they are instances of the box version to deploy. The instances of other box versions are
+     * terminated and deleted, so that new ones are deployed.
+     *
+     * @return the result or null if there is no instance to reconfigure
+     */
+    private Result reuseInstances(AbstractBuild<?, ?> build, ElasticBoxCloud ebCloud, Client client,
+                                  VariableResolver resolver, TaskLogger logger)
+            throws IOException, InterruptedException {
+
+        Map<String, String> reusableInstances = new HashMap<String, String>();
+        for (BuilderListener listener : Jenkins.getInstance().getExtensionList(BuilderListener.class)) {
+            reusableInstances.putAll(listener.getReusableInstances(build, ebCloud, id));
+        }
+        if (reusableInstances.isEmpty()) {
+            return null;
+        }
+
+        String boxId = DescriptorHelper.getResolvedBoxVersion(client, workspace, box, boxVersion);
+        DescriptorHelper.InstanceFilterByBox activeInstanceFilter = new DescriptorHelper.InstanceFilterByBox(null);
+        JSONArray currentInstances = new JSONArray();
+        for (Object instance : client.getInstances(workspace, new ArrayList<String>(reusableInstances.keySet()))) {
+            JSONObject instanceJson = (JSONObject) instance;
+            if (!activeInstanceFilter.accept(instanceJson)) {
+                continue;
+            }
+
+            String instanceId = instanceJson.getString("id");
+            if (boxId.equals(reusableInstances.get(instanceId))) {
+                currentInstances.add(instanceJson);
+                continue;
+            }
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            logger.info("The box version of instance {0} has changed, a new instance will be deployed",
+                    Client.getPageUrl(ebCloud.getEndpointUrl(), instanceJson));
+            try {
+                TerminateOperation.terminate(instanceJson, client, logger);
+                client.delete(instanceId);
+            } catch (ClientException ex) {
+                if (ex.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                    throw ex;
+                }
+            }
+            TerminateOperation.notifyTerminating(build, instanceId, ebCloud);
+        }
+
+        if (currentInstances.isEmpty()) {
+            return null;
+        }
+
+        ReconfigureOperation.reconfigure(currentInstances, resolver.resolveVariables(variables),
+                waitForCompletionTimeout, client, logger);
+        return new Result(currentInstances.getJSONObject(0), true);
+    }
+
     private String deploy(ElasticBoxCloud ebCloud, Client client, VariableResolver resolver, TaskLogger logger,
                           AbstractBuild<?, ?> build)
             throws IOException, InterruptedException {
@@ -257,7 +321,7 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
         String instanceId = Client.getResourceId(monitor.getResourceUrl());
         String instancePageUrl = Client.getPageUrl(ebCloud.getEndpointUrl(), client.getInstance(instanceId));
         logger.info("Instance {0} is being deployed", instancePageUrl);
-        notifyDeploying(build, instanceId, ebCloud);
+        notifyDeploying(build, instanceId, ebCloud, boxId);
         if (waitForCompletion) {
             try {
                 logger.info("Waiting for the deployment of the instance {0} to finish", instancePageUrl);
@@ -267,12 +331,60 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
                 Logger.getLogger(DeployBox.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
                 logger.error("Failed to deploy instance {0}: {1}", instancePageUrl, ex.getMessage());
                 throw new AbortException(ex.getMessage());
+            } catch (InterruptedException ex) {
+                cancelDeployment(build, instanceId, instancePageUrl, ebCloud, client, logger);
+                throw ex;
             }
         }
 
         return Client.getResourceId(monitor.getResourceUrl());
     }
 
+    /**
+     * Terminates the instance being deployed by an interrupted build right away, so that it doesn't keep deploying
+     * until it is cleaned up. The instance is kept only if its deployment has already finished and a
+     * {@link BuilderListener} offers it for reuse by the next build.
+     */
+    private void cancelDeployment(AbstractBuild<?, ?> build, String instanceId, String instancePageUrl,
+                                  ElasticBoxCloud ebCloud, Client client, TaskLogger logger)
+            throws InterruptedException {
+
+        if (isDeploymentFinished(instanceId, client)) {
+            for (BuilderListener listener : Jenkins.getInstance().getExtensionList(BuilderListener.class)) {
+                if (listener.getReusableInstances(build, ebCloud, id).containsKey(instanceId)) {
+                    logger.info("The build is interrupted, instance {0} is kept to be reconfigured by the next build",
+                            instancePageUrl);
+                    return;
+                }
+            }
+        }
+
+        try {
+            client.forceTerminate(instanceId);
+        } catch (IOException ex) {
+            Logger.getLogger(DeployBox.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
+            logger.error("Failed to terminate instance {0} of the interrupted build: {1}", instancePageUrl,
+                    ex.getMessage());
+            return;
+        }
+
+        logger.info("The build is interrupted, instance {0} is being terminated", instancePageUrl);
+        Logger.getLogger(DeployBox.class.getName()).info(MessageFormat.format(
+                "Terminating instance {0} deployed by interrupted build {1}, {2} instances reclaimed from interrupted "
+                        + "builds so far", instancePageUrl, build.getFullDisplayName(),
+                reclaimedInstances.incrementAndGet()));
+        TerminateOperation.notifyTerminating(build, instanceId, ebCloud);
+    }
+
+    private static boolean isDeploymentFinished(String instanceId, Client client) {
+        try {
+            return Client.FINISH_STATES.contains(client.getInstance(instanceId).getString("state"));
+        } catch (IOException ex) {
+            Logger.getLogger(DeployBox.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+            return false;
+        }
+    }
+
     private void injectEnvVariables(AbstractBuild build, final Result result, final Client client) throws IOException {
         final String instanceId = result.instance.getString("id");
         final JSONObject service = client.getService(instanceId);
@@ -350,7 +462,13 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
 
         Client client = ebCloud.getClient();
 
-        if (!alternateAction.equals(ACTION_NONE)) {
+        // the configured alternate action takes precedence, the instances are reused only when there is none
+        if (alternateAction.equals(ACTION_NONE)) {
+            Result reusedInstances = reuseInstances(build, ebCloud, client, resolver, logger);
+            if (reusedInstances != null) {
+                return reusedInstances;
+            }
+        } else {
 
             Set<String> tagSet = resolver.resolveTags(tags);
 
@@ -396,12 +514,12 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
         return new Result(instance, false);
     }
 
-    private void notifyDeploying(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud ebxCloud)
-            throws InterruptedException {
+    private void notifyDeploying(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud ebxCloud,
+                                 String boxId) throws InterruptedException {
 
         for (BuilderListener listener : Jenkins.getInstance().getExtensionList(BuilderListener.class)) {
             try {
-                listener.onDeploying(build, instanceId, ebxCloud);
+                listener.onDeploying(build, instanceId, ebxCloud, workspace, id, boxId);
             } catch (IOException ex) {
                 Logger.getLogger(DeployBox.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
             }
@@ -415,6 +533,8 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
         TaskLogger logger = new TaskLogger(listener);
         logger.info("Executing Deploy Box build step");
 
+        DeferredMigrations.ensureMigrated(this);
+
         ElasticBoxCloud ebCloud = (ElasticBoxCloud) Jenkins.getInstance().getCloud(getCloud());
         if (ebCloud == null) {
             throw new IOException(MessageFormat.format("Cannod find ElasticBox cloud ''{0}''.", getCloud()));
@@ -596,21 +716,25 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
 
     }
 
-    private static class DeploymentTypeMigrator extends AbstractConverter.Migrator<DeployBox> {
+    private static class DeploymentTypeMigrator extends AbstractConverter.DeferredMigrator<DeployBox> {
 
         public DeploymentTypeMigrator() {
             super(Version._4_0_3);
         }
 
         @Override
-        protected void migrate(DeployBox deployBox, Version olderVersion) {
+        protected boolean isMigrationNeeded(DeployBox deployBox) {
+            return StringUtils.isBlank(deployBox.getBoxDeploymentType());
+        }
+
+        @Override
+        protected void migrateDeferred(DeployBox deployBox, Version olderVersion) throws IOException {
             if (StringUtils.isBlank(deployBox.getBoxDeploymentType())) {
                 if (StringUtils.isNotBlank(deployBox.cloud)) {
 
-                    final Client client = ClientCache.getClient(deployBox.cloud);
+                    final Client client = ClientCache.findOrCreateClient(deployBox.cloud);
 
-                    deployBox.boxDeploymentType = new DeployBoxOrderServiceImpl(client)
-                            .deploymentType(deployBox.box)
+                    deployBox.boxDeploymentType = DeferredMigrations.getBoxDeploymentType(client, deployBox.box)
                             .getValue();
 
                 } else {
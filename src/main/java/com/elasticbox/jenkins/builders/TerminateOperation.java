@@ -44,7 +44,7 @@ import java.util.logging.Logger;
 
 public class TerminateOperation extends LongOperation implements IOperation.InstanceOperation {
 
-    private static void notifyTerminating(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud)
+    static void notifyTerminating(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud)
             throws InterruptedException {
         for (BuilderListener listener: Jenkins.getInstance().getExtensionList(BuilderListener.class)) {
             try {
@@ -17,6 +17,7 @@ import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 
 import hudson.util.XStream2;
 
+import java.io.IOException;
 import java.util.List;
 
 public abstract class AbstractConverter<T> extends XStream2.PassthruConverter<T> {
@@ -31,6 +32,31 @@ public abstract class AbstractConverter<T> extends XStream2.PassthruConverter<T>
         protected abstract void migrate(T object, Version olderVersion);
     }
 
+    /**
+     * Migrator that needs to call ElasticBox. While the object is loaded it is only marked as pending migration, and
+     * it is migrated by {@link DeferredMigrations} once Jenkins has started.
+     */
+    public abstract static class DeferredMigrator<T> extends Migrator<T> {
+
+        public DeferredMigrator(Version version) {
+            super(version);
+        }
+
+        @Override
+        protected final void migrate(T object, Version olderVersion) {
+            if (isMigrationNeeded(object)) {
+                DeferredMigrations.add(this, object, olderVersion);
+            }
+        }
+
+        /**
+         * Checks without calling ElasticBox whether the object needs to be migrated.
+         */
+        protected abstract boolean isMigrationNeeded(T object);
+
+        protected abstract void migrateDeferred(T object, Version olderVersion) throws IOException;
+    }
+
     private final List<? extends Migrator> migrators;
 
     public AbstractConverter(XStream2 xstream, List<? extends Migrator<T>> migrators) {
@@ -0,0 +1,284 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.migration;
+
+import com.elasticbox.Client;
+import com.elasticbox.jenkins.model.services.deployment.DeployBoxOrderServiceImpl;
+import com.elasticbox.jenkins.model.services.deployment.DeploymentType;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractProject;
+import hudson.model.BuildableItemWithBuildWrappers;
+import hudson.model.Project;
+import hudson.tasks.BuildStep;
+import hudson.tasks.BuildWrapper;
+
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Objects pending the migrations of {@link AbstractConverter.DeferredMigrator}. The migrations are run in the
+ * background once Jenkins has started, so that a slow or unreachable ElasticBox doesn't hold the loading of the
+ * Jenkins configuration. Failed migrations are retried a few times, and code that needs a migrated object before the
+ * background migration gets to it can run its migrations right away with {@link #ensureMigrated(Object)}. The
+ * projects of the migrated build steps are saved, so that they are not migrated again after a restart.
+ */
+public final class DeferredMigrations {
+    private static final Logger LOGGER = Logger.getLogger(DeferredMigrations.class.getName());
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Map<Object, List<PendingMigration>> pendingMigrations =
+            new IdentityHashMap<Object, List<PendingMigration>>();
+
+    // locks held while an object is migrated, the objects themselves are not locked because some of them are locked
+    // by Jenkins for other purposes, for example while provisioning
+    private static final Map<Object, Object> migrationLocks = new IdentityHashMap<Object, Object>();
+
+    // the type of a box never changes, so it is looked up once for all the objects referring to the box
+    private static final Map<String, DeploymentType> boxDeploymentTypes =
+            new ConcurrentHashMap<String, DeploymentType>();
+
+    private static volatile boolean started;
+
+    private DeferredMigrations() {
+    }
+
+    private static final class PendingMigration {
+        private final AbstractConverter.DeferredMigrator migrator;
+        private final Version olderVersion;
+        private int failures;
+
+        PendingMigration(AbstractConverter.DeferredMigrator migrator, Version olderVersion) {
+            this.migrator = migrator;
+            this.olderVersion = olderVersion;
+        }
+    }
+
+    static void add(AbstractConverter.DeferredMigrator migrator, Object object, Version olderVersion) {
+        add(object, new PendingMigration(migrator, olderVersion));
+        if (started) {
+            // the object is loaded after startup, for example when its project is reloaded
+            schedule(0);
+        }
+    }
+
+    private static void add(Object object, PendingMigration pendingMigration) {
+        synchronized (pendingMigrations) {
+            List<PendingMigration> migrations = pendingMigrations.get(object);
+            if (migrations == null) {
+                migrations = new ArrayList<PendingMigration>();
+                pendingMigrations.put(object, migrations);
+            }
+            migrations.add(pendingMigration);
+        }
+    }
+
+    private static List<PendingMigration> remove(Object object) {
+        synchronized (pendingMigrations) {
+            return pendingMigrations.remove(object);
+        }
+    }
+
+    private static Object getLock(Object object) {
+        synchronized (pendingMigrations) {
+            Object lock = migrationLocks.get(object);
+            if (lock == null) {
+                lock = new Object();
+                migrationLocks.put(object, lock);
+            }
+            return lock;
+        }
+    }
+
+    private static void releaseLock(Object object) {
+        synchronized (pendingMigrations) {
+            if (!pendingMigrations.containsKey(object)) {
+                migrationLocks.remove(object);
+            }
+        }
+    }
+
+    public static boolean isPending(Object object) {
+        synchronized (pendingMigrations) {
+            return pendingMigrations.containsKey(object);
+        }
+    }
+
+    /**
+     * Runs the pending migrations of an object, if any, waiting for them if they are already running in the
+     * background.
+     *
+     * @param object the object to migrate
+     * @return true if the object has no pending migrations left
+     */
+    public static boolean ensureMigrated(Object object) {
+        boolean migrated = false;
+        synchronized (getLock(object)) {
+            List<PendingMigration> migrations = remove(object);
+            if (migrations != null) {
+                migrated = migrate(object, migrations);
+            }
+        }
+        releaseLock(object);
+
+        if (migrated) {
+            saveProjects(Collections.singleton(object));
+        }
+        return !isPending(object);
+    }
+
+    @Initializer(after = InitMilestone.COMPLETED)
+    public static void migrateAll() {
+        started = true;
+        schedule(0);
+    }
+
+    private static void schedule(long delay) {
+        Timer.get().schedule(new Runnable() {
+            public void run() {
+                runPendingMigrations();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static void runPendingMigrations() {
+        List<Object> objects;
+        synchronized (pendingMigrations) {
+            objects = new ArrayList<Object>(pendingMigrations.keySet());
+        }
+        if (objects.isEmpty()) {
+            return;
+        }
+
+        LOGGER.info(MessageFormat.format("Migrating {0} ElasticBox configuration objects", objects.size()));
+        boolean retryNeeded = false;
+        Set<Object> migratedObjects = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (Object object : objects) {
+            synchronized (getLock(object)) {
+                List<PendingMigration> migrations = remove(object);
+                if (migrations != null) {
+                    if (migrate(object, migrations)) {
+                        migratedObjects.add(object);
+                    } else {
+                        retryNeeded = true;
+                    }
+                }
+            }
+            releaseLock(object);
+        }
+        saveProjects(migratedObjects);
+
+        if (retryNeeded) {
+            schedule(RETRY_DELAY);
+        }
+    }
+
+    private static boolean migrate(Object object, List<PendingMigration> migrations) {
+        boolean migrated = true;
+        for (PendingMigration migration : migrations) {
+            try {
+                migration.migrator.migrateDeferred(object, migration.olderVersion);
+            } catch (IOException | RuntimeException ex) {
+                migration.failures++;
+                if (migration.failures < MAX_ATTEMPTS) {
+                    LOGGER.log(Level.WARNING, MessageFormat.format("Error migrating {0}, it will be retried later",
+                            object), ex);
+                    add(object, migration);
+                    migrated = false;
+                } else {
+                    LOGGER.log(Level.SEVERE, MessageFormat.format("Cannot migrate {0} after {1} attempts", object,
+                            MAX_ATTEMPTS), ex);
+                }
+            }
+        }
+        return migrated;
+    }
+
+    /**
+     * Saves the projects of the migrated build steps and build wrappers, each project once. The other migrated
+     * objects are saved by their migrators.
+     */
+    private static void saveProjects(Set<Object> migratedObjects) {
+        Set<Object> buildSteps = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (Object object : migratedObjects) {
+            if (object instanceof BuildStep || object instanceof BuildWrapper) {
+                buildSteps.add(object);
+            }
+        }
+        if (buildSteps.isEmpty()) {
+            return;
+        }
+
+        for (AbstractProject<?, ?> project : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
+            if (containsAny(project, buildSteps)) {
+                try {
+                    project.save();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, MessageFormat.format("Error saving project {0} after migrating its "
+                            + "ElasticBox build steps", project.getFullName()), ex);
+                }
+            }
+        }
+    }
+
+    private static boolean containsAny(AbstractProject<?, ?> project, Set<Object> buildSteps) {
+        List<Object> projectBuildSteps = new ArrayList<Object>(project.getPublishersList());
+        if (project instanceof Project) {
+            projectBuildSteps.addAll(((Project<?, ?>) project).getBuildersList());
+        }
+        if (project instanceof BuildableItemWithBuildWrappers) {
+            projectBuildSteps.addAll(((BuildableItemWithBuildWrappers) project).getBuildWrappersList());
+        }
+
+        for (Object buildStep : projectBuildSteps) {
+            if (buildSteps.contains(buildStep)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the deployment type of a box, fetching the box from ElasticBox only the first time.
+     *
+     * @param client the client of the ElasticBox cloud of the box
+     * @param boxId the ID of the box
+     * @return the deployment type of the box
+     */
+    public static DeploymentType getBoxDeploymentType(Client client, String boxId) {
+        String key = client.getEndpointUrl() + '|' + boxId;
+        DeploymentType deploymentType = boxDeploymentTypes.get(key);
+        if (deploymentType == null) {
+            deploymentType = new DeployBoxOrderServiceImpl(client).deploymentType(boxId);
+            boxDeploymentTypes.put(key, deploymentType);
+        }
+        return deploymentType;
+    }
+
+}
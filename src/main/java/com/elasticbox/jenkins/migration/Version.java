@@ -32,7 +32,7 @@ public class Version implements Comparable<Version> {
         if (result == 0) {
             result = compare(this.minor, version.minor);
             if (result == 0) {
-                result = compare(this.minor, version.micro);
+                result = compare(this.micro, version.micro);
             }
         }
         return result;
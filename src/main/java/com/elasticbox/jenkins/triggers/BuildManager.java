@@ -19,4 +19,10 @@ import java.io.IOException;
 
 public abstract class BuildManager<T extends IBuildHandler> implements ExtensionPoint {
     public abstract T createBuildHandler(AbstractProject<?, ?> project, boolean newTrigger) throws IOException;
+
+    /**
+     * Called when the trigger of a project is stopped, so that the project isn't handled anymore.
+     */
+    public void removeBuildHandler(AbstractProject<?, ?> project) {
+    }
 }
@@ -40,13 +40,19 @@ public class PullRequestBuildTrigger extends Trigger<AbstractProject<?, ?>> {
 
     private final String triggerPhrase;
     private final String whitelist;
+    private final boolean reuseInstances;
 
     private transient IBuildHandler buildHandler;
 
-    @DataBoundConstructor
     public PullRequestBuildTrigger(String triggerPhrase, String whitelist) {
+        this(triggerPhrase, whitelist, false);
+    }
+
+    @DataBoundConstructor
+    public PullRequestBuildTrigger(String triggerPhrase, String whitelist, boolean reuseInstances) {
         this.triggerPhrase = triggerPhrase;
         this.whitelist = whitelist;
+        this.reuseInstances = reuseInstances;
     }
 
     public String getTriggerPhrase() {
@@ -57,6 +63,10 @@ public class PullRequestBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         return whitelist;
     }
 
+    public boolean isReuseInstances() {
+        return reuseInstances;
+    }
+
     public IBuildHandler getBuildHandler() {
         return buildHandler;
     }
@@ -90,6 +100,15 @@ public class PullRequestBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         }
     }
 
+    @Override
+    public void stop() {
+        BuildManager buildManager = getDescriptor().getBuildManager();
+        if (buildManager != null && job != null) {
+            buildManager.removeBuildHandler(job);
+        }
+        super.stop();
+    }
+
     @Extension
     public static final class DescriptorImpl extends TriggerDescriptor {
         private String webHookExternalUrl;
@@ -19,6 +19,8 @@ import com.elasticbox.jenkins.util.ClientCache;
 
 import hudson.Extension;
 import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
 
 import net.sf.json.JSONObject;
 
@@ -26,19 +28,45 @@ import org.apache.commons.httpclient.HttpStatus;
 
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.Iterator;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
+/**
+ * Deletes the terminated instances of the closed pull requests. The instances are grouped by cloud and workspace, so
+ * that the state of all the instances of a workspace is fetched with one request, and the instances are deleted a
+ * few at a time. The workspace of an instance is recorded when it is deployed, only the instances tracked before
+ * that are fetched on their own the first time to find out their workspace.
+ */
 @Extension
 public class DeleteInstancesWorkload extends ElasticBoxExecutor.Workload {
-    private final Queue<PullRequestInstance> terminatingInstances = new ConcurrentLinkedQueue<PullRequestInstance>();
+    private static final int MAX_CONCURRENT_DELETIONS =
+            Integer.getInteger(DeleteInstancesWorkload.class.getName() + ".maxConcurrentDeletions", 8);
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_DELETIONS,
+            new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+
+    // <cloud name>|<instance ID> -> instance
+    private final ConcurrentMap<String, PullRequestInstance> terminatingInstances =
+            new ConcurrentHashMap<String, PullRequestInstance>();
+
+    // <cloud name>|<instance ID> -> ID of the workspace of an instance that doesn't record it
+    private final Map<String, String> instanceWorkspaces = new ConcurrentHashMap<String, String>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
 
     public void add(PullRequestInstance terminatingInstance) {
-        if (!terminatingInstances.contains(terminatingInstance)) {
-            terminatingInstances.add(terminatingInstance);
-        }
+        terminatingInstances.putIfAbsent(getKey(terminatingInstance), terminatingInstance);
     }
 
     @Override
@@ -48,29 +76,150 @@ public class DeleteInstancesWorkload extends ElasticBoxExecutor.Workload {
 
     @Override
     protected void execute(TaskListener listener) throws IOException {
-        for (Iterator<PullRequestInstance> iter = terminatingInstances.iterator(); iter.hasNext();) {
-            if (deleteInstance(iter.next(), listener)) {
-                iter.remove();
+        if (terminatingInstances.isEmpty() || !running.compareAndSet(false, true)) {
+            // nothing to delete or the previous run is not finished yet
+            return;
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            int deleted = deleteInstances(listener);
+            if (deleted > 0) {
+                log(Level.INFO, MessageFormat.format("Deleted {0} instances of pull requests in {1} ms, {2} instances "
+                        + "are waiting to be deleted", deleted, System.currentTimeMillis() - startTime,
+                        terminatingInstances.size()));
             }
+        } finally {
+            running.set(false);
         }
     }
 
-    private boolean deleteInstance(PullRequestInstance instance, TaskListener listener) {
-        Client client = ClientCache.getClient(instance.cloud);
+    private static String getKey(PullRequestInstance instance) {
+        return instance.cloud + '|' + instance.id;
+    }
+
+    private int deleteInstances(final TaskListener listener) {
+        List<PullRequestInstance> deletedInstanceList = new ArrayList<PullRequestInstance>();
+        List<PullRequestInstance> taskInstances = new ArrayList<PullRequestInstance>();
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+
+        // <cloud name>|<workspace ID> -> instances
+        Map<String, List<PullRequestInstance>> workspaceInstances = new HashMap<String, List<PullRequestInstance>>();
+        for (final PullRequestInstance instance : terminatingInstances.values()) {
+            String workspace = instance.workspace != null ? instance.workspace
+                    : instanceWorkspaces.get(getKey(instance));
+            if (workspace == null) {
+                taskInstances.add(instance);
+                tasks.add(new Callable<Boolean>() {
+                    public Boolean call() {
+                        return deleteInstance(instance, null, listener);
+                    }
+                });
+            } else {
+                String key = instance.cloud + '|' + workspace;
+                List<PullRequestInstance> instances = workspaceInstances.get(key);
+                if (instances == null) {
+                    instances = new ArrayList<PullRequestInstance>();
+                    workspaceInstances.put(key, instances);
+                }
+                instances.add(instance);
+            }
+        }
+
+        for (Map.Entry<String, List<PullRequestInstance>> entry : workspaceInstances.entrySet()) {
+            List<PullRequestInstance> instances = entry.getValue();
+            String cloud = instances.get(0).cloud;
+            String workspace = entry.getKey().substring(cloud.length() + 1);
+            Client client = ClientCache.getClient(cloud);
+            if (client == null) {
+                continue;
+            }
+
+            List<String> instanceIDs = new ArrayList<String>(instances.size());
+            for (PullRequestInstance instance : instances) {
+                instanceIDs.add(instance.id);
+            }
+            Map<String, JSONObject> idToInstanceMap = new HashMap<String, JSONObject>(instances.size());
+            try {
+                for (Object instance : client.getInstances(workspace, instanceIDs)) {
+                    JSONObject instanceJson = (JSONObject) instance;
+                    idToInstanceMap.put(instanceJson.getString("id"), instanceJson);
+                }
+            } catch (IOException ex) {
+                log(Level.SEVERE, MessageFormat.format("Error fetching the instances of workspace {0}", workspace),
+                        ex, listener);
+                continue;
+            }
+
+            for (final PullRequestInstance instance : instances) {
+                final JSONObject instanceJson = idToInstanceMap.get(instance.id);
+                if (instanceJson == null) {
+                    // the instance has been deleted already
+                    deletedInstanceList.add(instance);
+                } else {
+                    taskInstances.add(instance);
+                    tasks.add(new Callable<Boolean>() {
+                        public Boolean call() {
+                            return deleteInstance(instance, instanceJson, listener);
+                        }
+                    });
+                }
+            }
+        }
 
-        JSONObject instanceJson;
         try {
-            instanceJson = client.getInstance(instance.id);
-        } catch (IOException ex) {
-            if (ex instanceof ClientException && ((ClientException) ex).getStatusCode() == HttpStatus.SC_NOT_FOUND) {
-                return true;
+            List<Future<Boolean>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    if (results.get(i).get()) {
+                        deletedInstanceList.add(taskInstances.get(i));
+                    }
+                } catch (ExecutionException ex) {
+                    log(Level.SEVERE, MessageFormat.format("Error deleting instance {0}", taskInstances.get(i)),
+                            ex.getCause(), listener);
+                }
             }
-            log(Level.SEVERE, MessageFormat.format(
-                    "Error fetching instance {0}", client.getInstanceUrl(instance.id)), ex, listener);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
 
+        for (PullRequestInstance instance : deletedInstanceList) {
+            terminatingInstances.remove(getKey(instance));
+            instanceWorkspaces.remove(getKey(instance));
+        }
+        return deletedInstanceList.size();
+    }
+
+    /**
+     * Deletes an instance if it is terminated.
+     *
+     * @param instance the instance to delete
+     * @param instanceJson the instance fetched from ElasticBox or null if it is not fetched yet
+     * @param listener the listener of the workload
+     * @return true if the instance doesn't exist anymore
+     */
+    private boolean deleteInstance(PullRequestInstance instance, JSONObject instanceJson, TaskListener listener) {
+        Client client = ClientCache.getClient(instance.cloud);
+        if (client == null) {
             return false;
         }
 
+        if (instanceJson == null) {
+            try {
+                instanceJson = client.getInstance(instance.id);
+            } catch (IOException ex) {
+                if (ex instanceof ClientException
+                        && ((ClientException) ex).getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                    return true;
+                }
+                log(Level.SEVERE, MessageFormat.format(
+                        "Error fetching instance {0}", client.getInstanceUrl(instance.id)), ex, listener);
+
+                return false;
+            }
+            instanceWorkspaces.put(getKey(instance), instanceJson.getString("owner"));
+        }
+
         String state = instanceJson.getString("state");
         if (Client.InstanceState.UNAVAILABLE.equals(state)) {
             try {
@@ -0,0 +1,224 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.triggers.github;
+
+import static org.jenkinsci.plugins.github.config.GitHubServerConfig.withHost;
+
+import org.jenkinsci.plugins.github.GitHubPlugin;
+import org.jenkinsci.plugins.github.config.GitHubServerConfig;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GHUser;
+import org.kohsuke.github.GitHub;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Connections to GitHub shared by the pull request trigger, one per configured GitHub server and credential, along
+ * with the organizations and organization memberships looked up through them. Connecting to GitHub and looking up
+ * memberships cost API requests, so they are kept for a while instead of being done for every event. The rate limit
+ * of each connection is tracked, so that background work backs off before the events that trigger builds are
+ * throttled.
+ */
+public final class GitHubConnections {
+    private static final Logger LOGGER = Logger.getLogger(GitHubConnections.class.getName());
+
+    private static final long CONNECTION_TTL = Long.getLong(GitHubConnections.class.getName() + ".connectionTtl",
+            TimeUnit.HOURS.toMillis(1));
+    private static final long MEMBERSHIP_TTL = Long.getLong(GitHubConnections.class.getName() + ".membershipTtl",
+            TimeUnit.MINUTES.toMillis(10));
+    private static final long RATE_LIMIT_CHECK_PERIOD = TimeUnit.MINUTES.toMillis(1);
+
+    // API requests of each connection left to the events when background work stops
+    private static final int BACKGROUND_RESERVE =
+            Integer.getInteger(GitHubConnections.class.getName() + ".backgroundReserve", 1000);
+
+    private static final int MAX_CACHED_MEMBERSHIPS = 1000;
+
+    private static final class Connection {
+        private final GitHub gitHub;
+        private final long createdAt;
+        private volatile GHRateLimit rateLimit;
+        private volatile long rateLimitCheckedAt;
+
+        Connection(GitHub gitHub) {
+            this.gitHub = gitHub;
+            this.createdAt = System.currentTimeMillis();
+        }
+    }
+
+    static final class CachedValue<T> {
+        private final T value;
+        private final long expiresAt;
+
+        CachedValue(T value, long ttl) {
+            this.value = value;
+            this.expiresAt = System.currentTimeMillis() + ttl;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    // <API URL>|<credentials ID> -> connection
+    private static final Map<String, Connection> connections = new ConcurrentHashMap<String, Connection>();
+
+    // <API URL>|<credentials ID> -> names of the organizations of the user of the connection
+    private static final Map<String, CachedValue<Set<String>>> organizations =
+            new ConcurrentHashMap<String, CachedValue<Set<String>>>();
+
+    // <API URL>|<credentials ID>|<organization>|<user> -> whether the user is a member of the organization
+    private static final Map<String, CachedValue<Boolean>> memberships =
+            new ConcurrentHashMap<String, CachedValue<Boolean>>();
+
+    private GitHubConnections() {
+    }
+
+    /**
+     * Gets a connection to a GitHub server with the first credential configured for it.
+     *
+     * @param host the host of the GitHub server
+     * @return the connection or null if there is no valid credential configured for the host
+     */
+    static GitHub getGitHub(String host) {
+        for (GitHubServerConfig config : GitHubPlugin.configuration().getConfigs()) {
+            if (!withHost(host).apply(config)) {
+                continue;
+            }
+
+            String key = config.getApiUrl() + '|' + config.getCredentialsId();
+            Connection connection = connections.get(key);
+            if (connection != null && System.currentTimeMillis() - connection.createdAt < CONNECTION_TTL) {
+                return connection.gitHub;
+            }
+
+            GitHub gitHub = GitHubServerConfig.loginToGithub().apply(config);
+            if (gitHub != null) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(MessageFormat.format("Connected to GitHub at {0} with credential {1}",
+                            config.getApiUrl(), config.getCredentialsId()));
+                }
+                connections.put(key, new Connection(gitHub));
+                return gitHub;
+            }
+        }
+        return null;
+    }
+
+    private static String getKey(GitHub gitHub) {
+        for (Map.Entry<String, Connection> entry : connections.entrySet()) {
+            if (entry.getValue().gitHub == gitHub) {
+                return entry.getKey();
+            }
+        }
+        // not a shared connection
+        return String.valueOf(System.identityHashCode(gitHub));
+    }
+
+    /**
+     * Gets the names of the organizations of the user of a connection.
+     *
+     * @param gitHub the connection
+     * @return the organization names
+     * @throws IOException if the organizations cannot be fetched from GitHub
+     */
+    static Set<String> getMyOrganizations(GitHub gitHub) throws IOException {
+        String key = getKey(gitHub);
+        CachedValue<Set<String>> cachedOrganizations = organizations.get(key);
+        if (cachedOrganizations == null || cachedOrganizations.isExpired()) {
+            Set<String> names = Collections.unmodifiableSet(new HashSet<String>(gitHub.getMyOrganizations().keySet()));
+            cachedOrganizations = new CachedValue<Set<String>>(names, MEMBERSHIP_TTL);
+            organizations.put(key, cachedOrganizations);
+        }
+        return cachedOrganizations.value;
+    }
+
+    /**
+     * Checks whether a user is a member of an organization.
+     *
+     * @param gitHub the connection to look up the membership with
+     * @param organization the name of the organization
+     * @param user the user
+     * @return true if the user is a member of the organization
+     * @throws IOException if the membership cannot be looked up in GitHub
+     */
+    static boolean isMember(GitHub gitHub, String organization, GHUser user) throws IOException {
+        String key = getKey(gitHub) + '|' + organization + '|' + user.getLogin();
+        CachedValue<Boolean> membership = memberships.get(key);
+        if (membership == null || membership.isExpired()) {
+            if (memberships.size() >= MAX_CACHED_MEMBERSHIPS) {
+                removeExpiredMemberships();
+            }
+            membership = new CachedValue<Boolean>(gitHub.getOrganization(organization).hasMember(user),
+                    MEMBERSHIP_TTL);
+            memberships.put(key, membership);
+        }
+        return membership.value;
+    }
+
+    private static void removeExpiredMemberships() {
+        for (Iterator<CachedValue<Boolean>> iter = memberships.values().iterator(); iter.hasNext();) {
+            if (iter.next().isExpired()) {
+                iter.remove();
+            }
+        }
+    }
+
+    private static GHRateLimit getRateLimit(Connection connection) {
+        long now = System.currentTimeMillis();
+        if (connection.rateLimit == null || now - connection.rateLimitCheckedAt >= RATE_LIMIT_CHECK_PERIOD) {
+            connection.rateLimitCheckedAt = now;
+            try {
+                // requests to the rate limit don't count against it
+                connection.rateLimit = connection.gitHub.getRateLimit();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Cannot get the rate limit of GitHub", ex);
+            }
+        }
+        return connection.rateLimit;
+    }
+
+    /**
+     * Checks whether a connection has enough API requests left for background work, keeping a reserve for the events
+     * that trigger builds.
+     *
+     * @param gitHub the connection
+     * @return false if background work must wait until the rate limit is reset
+     */
+    static boolean hasBackgroundQuota(GitHub gitHub) {
+        Connection connection = connections.get(getKey(gitHub));
+        if (connection == null) {
+            return true;
+        }
+
+        GHRateLimit rateLimit = getRateLimit(connection);
+        if (rateLimit == null || rateLimit.remaining >= Math.min(BACKGROUND_RESERVE, rateLimit.limit / 2)) {
+            return true;
+        }
+
+        LOGGER.info(MessageFormat.format("Only {0} of {1} GitHub API requests are left until {2}, postponing "
+                + "background work", rateLimit.remaining, rateLimit.limit, rateLimit.getResetDate()));
+        return false;
+    }
+
+}
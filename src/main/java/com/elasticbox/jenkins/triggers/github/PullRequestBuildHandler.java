@@ -24,24 +24,18 @@ import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
 import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
-import hudson.model.Run;
 import hudson.model.StringParameterValue;
 import hudson.plugins.git.BranchSpec;
 import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.RevisionParameterAction;
 import hudson.plugins.git.UserRemoteConfig;
-import hudson.plugins.git.util.BuildData;
-import hudson.security.ACL;
 import hudson.util.SequentialExecutionQueue;
 import jenkins.model.Jenkins;
-import org.acegisecurity.Authentication;
-import org.acegisecurity.context.SecurityContextHolder;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.github.GHEvent;
 import org.kohsuke.github.GHEventPayload;
 import org.kohsuke.github.GHHook;
 import org.kohsuke.github.GHIssueState;
-import org.kohsuke.github.GHOrganization;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GHUser;
@@ -54,9 +48,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -81,9 +78,26 @@ public class PullRequestBuildHandler implements IBuildHandler {
     private static final Collection<GHEvent> WEBHOOK_EVENTS
         = Arrays.asList(GHEvent.PULL_REQUEST, GHEvent.ISSUE_COMMENT);
 
+    // a web hook found or added is not checked again for a project of the same repository within this period
+    private static final long WEBHOOK_CHECK_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    // configured GitHub project URL -> URL of the repository resolved from GitHub
+    private static final ConcurrentHashMap<String, String> resolvedRepositoryUrls =
+        new ConcurrentHashMap<String, String>();
+
+    // configured GitHub project URL -> build handlers waiting for the URL of the repository to be resolved
+    private static final Map<String, List<PullRequestBuildHandler>> unresolvedBuildHandlers =
+        new HashMap<String, List<PullRequestBuildHandler>>();
+
+    // normalized GitHub repository URL -> web hook URLs waiting to be checked for the repository
+    private static final Map<String, Set<String>> pendingWebHooks = new HashMap<String, Set<String>>();
+
+    // <normalized GitHub repository URL>|<web hook URL> -> time when the web hook was found or added
+    private static final ConcurrentHashMap<String, Long> checkedWebHooks = new ConcurrentHashMap<String, Long>();
+
     private final AbstractProject<?, ?> project;
     private final Pattern triggerPhrasePattern;
-    private String gitHubRepositoryUrl;
+    private volatile String gitHubRepositoryUrl;
     private Set<String> whitelist;
 
     public PullRequestBuildHandler(AbstractProject<?, ?> project, boolean newTrigger) throws IOException {
@@ -105,18 +119,13 @@ public class PullRequestBuildHandler implements IBuildHandler {
             throw new IOException(MessageFormat.format("Invalid GitHub project URL specified: {0}", gitHubProjectUrl));
         }
 
-        GHRepository repo = gitHubRepoName.resolveOne();
-        if (repo == null) {
-            LOGGER.severe(
-                MessageFormat.format("Cannot connect to {0}. Please check your registered GitHub credentials",
-                    gitHubRepoName));
-
-            gitHubRepositoryUrl = gitHubProjectUrl;
-        } else {
-            gitHubRepositoryUrl = repo.getHtmlUrl().toString();
-        }
-        if (!gitHubRepositoryUrl.endsWith("/")) {
-            gitHubRepositoryUrl += '/';
+        // the trigger starts with the configured URL, the URL of the repository is resolved from GitHub in the
+        // background only the first time
+        String resolvedRepositoryUrl = resolvedRepositoryUrls.get(gitHubProjectUrl);
+        gitHubRepositoryUrl = withTrailingSlash(resolvedRepositoryUrl != null
+            ? resolvedRepositoryUrl : gitHubProjectUrl);
+        if (resolvedRepositoryUrl == null) {
+            resolveRepositoryUrl(gitHubRepoName, gitHubProjectUrl);
         }
 
         PullRequestBuildTrigger trigger = project.getTrigger(PullRequestBuildTrigger.class);
@@ -161,24 +170,68 @@ public class PullRequestBuildHandler implements IBuildHandler {
                         webhookUrl,
                         gitHubRepositoryUrl));
 
-                sequentialExecutionQueue.execute(new Runnable() {
-
-                    public void run() {
-                        try {
-                            createWebHook(webhookUrl);
-                        } catch (Throwable ex) {
-                            LOGGER.log(
-                                Level.SEVERE,
-                                MessageFormat.format("Error adding webhook to GitHub repository {0}",
-                                    gitHubRepositoryUrl),
-                                ex);
+                addWebHook(gitHubRepositoryUrl, webhookUrl);
+            }
+        }
+    }
+
+    private static String withTrailingSlash(String url) {
+        return url.endsWith("/") ? url : url + '/';
+    }
+
+    private void resolveRepositoryUrl(final GitHubRepositoryName gitHubRepoName, final String gitHubProjectUrl) {
+        synchronized (unresolvedBuildHandlers) {
+            List<PullRequestBuildHandler> buildHandlers = unresolvedBuildHandlers.get(gitHubProjectUrl);
+            if (buildHandlers != null) {
+                // the URL is already being resolved for another project
+                buildHandlers.add(this);
+                return;
+            }
+            buildHandlers = new ArrayList<PullRequestBuildHandler>();
+            buildHandlers.add(this);
+            unresolvedBuildHandlers.put(gitHubProjectUrl, buildHandlers);
+        }
+
+        ElasticBoxExecutor.threadPool.submit(new Runnable() {
+            public void run() {
+                GHRepository repo = null;
+                try {
+                    repo = gitHubRepoName.resolveOne();
+                } finally {
+                    List<PullRequestBuildHandler> buildHandlers;
+                    synchronized (unresolvedBuildHandlers) {
+                        if (repo != null) {
+                            resolvedRepositoryUrls.put(gitHubProjectUrl, repo.getHtmlUrl().toString());
+                        }
+                        buildHandlers = unresolvedBuildHandlers.remove(gitHubProjectUrl);
+                    }
+                    if (repo == null) {
+                        LOGGER.severe(
+                            MessageFormat.format(
+                                "Cannot connect to {0}. Please check your registered GitHub credentials",
+                                gitHubRepoName));
+                    } else {
+                        for (PullRequestBuildHandler buildHandler : buildHandlers) {
+                            buildHandler.setGitHubRepositoryUrl(repo.getHtmlUrl().toString());
                         }
                     }
-                });
+                }
             }
+        });
+    }
+
+    private void setGitHubRepositoryUrl(String repositoryUrl) {
+        if (!withTrailingSlash(repositoryUrl).equals(gitHubRepositoryUrl)) {
+            gitHubRepositoryUrl = withTrailingSlash(repositoryUrl);
+            PullRequestManager.getInstance().updateRepositoryUrl(project, this);
         }
     }
 
+    private boolean isOfRepository(String url) {
+        return PullRequestManager.normalizeRepositoryUrl(url).startsWith(
+            PullRequestManager.normalizeRepositoryUrl(gitHubRepositoryUrl) + '/');
+    }
+
     public static String getPullRequestAsString(GHPullRequest pullRequest) throws IOException {
         return pullRequest.getHtmlUrl() + " [" + pullRequest.getState() + "] Updated: " + pullRequest.getUpdatedAt();
     }
@@ -227,53 +280,111 @@ public class PullRequestBuildHandler implements IBuildHandler {
         }
     }
 
-    private GHHook createWebHook(String webhookUrl) throws IOException {
-        final GitHubRepositoryName gitHubRepoName = GitHubRepositoryName.create(gitHubRepositoryUrl);
+    /**
+     * Schedules the check of a web hook of a repository. The web hooks of all the projects of the same repository that
+     * are waiting to be checked are checked together, listing the hooks of the repository once.
+     */
+    private static void addWebHook(final String repositoryUrl, String webhookUrl) {
+        final String repositoryKey = PullRequestManager.normalizeRepositoryUrl(repositoryUrl);
+        Long checkTime = checkedWebHooks.get(repositoryKey + '|' + webhookUrl);
+        if (checkTime != null && System.currentTimeMillis() - checkTime < WEBHOOK_CHECK_PERIOD) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(MessageFormat.format("Webhook {0} of {1} has been checked recently", webhookUrl,
+                    repositoryUrl));
+            }
+            return;
+        }
+
+        synchronized (pendingWebHooks) {
+            Set<String> webhookUrls = pendingWebHooks.get(repositoryKey);
+            if (webhookUrls != null) {
+                // the check of the repository is already scheduled
+                webhookUrls.add(webhookUrl);
+                return;
+            }
+            webhookUrls = new HashSet<String>();
+            webhookUrls.add(webhookUrl);
+            pendingWebHooks.put(repositoryKey, webhookUrls);
+        }
+
+        sequentialExecutionQueue.execute(new Runnable() {
+
+            public void run() {
+                Set<String> webhookUrls;
+                synchronized (pendingWebHooks) {
+                    webhookUrls = pendingWebHooks.remove(repositoryKey);
+                }
+                try {
+                    createWebHooks(repositoryUrl, repositoryKey, webhookUrls);
+                } catch (Throwable ex) {
+                    LOGGER.log(
+                        Level.SEVERE,
+                        MessageFormat.format("Error adding webhook to GitHub repository {0}",
+                            repositoryUrl),
+                        ex);
+                }
+            }
+        });
+    }
+
+    private static void createWebHooks(String repositoryUrl, String repositoryKey, Set<String> webhookUrls)
+        throws IOException {
+
+        final GitHubRepositoryName gitHubRepoName = GitHubRepositoryName.create(repositoryUrl);
+        Set<String> missingWebhookUrls = new HashSet<String>(webhookUrls);
         for (GHRepository repo : gitHubRepoName.resolve()) {
-            // check if the webhook already exists
+            // check if the webhooks already exist
             for (GHHook hook : repo.getHooks()) {
-                if ("web".equals(hook.getName()) && webhookUrl.equals(hook.getConfig().get("url"))) {
+                String webhookUrl = hook.getConfig().get("url");
+                if ("web".equals(hook.getName()) && missingWebhookUrls.remove(webhookUrl)) {
                     LOGGER.info(
-                        MessageFormat.format("Webhook {0} already exists for {1}", webhookUrl, gitHubRepositoryUrl));
-                    return hook;
+                        MessageFormat.format("Webhook {0} already exists for {1}", webhookUrl, repositoryUrl));
+                    checkedWebHooks.put(repositoryKey + '|' + webhookUrl, System.currentTimeMillis());
                 }
             }
-            try {
-                Map<String, String> config = new HashMap<String, String>();
-                config.put("url", webhookUrl);
-                config.put("insecure_ssl", "1");
-                GHHook hook = repo.createHook("web", config, WEBHOOK_EVENTS, true);
-                LOGGER.info(
-                    MessageFormat.format(
-                        "Webhook {0} is added to GitHub repository {1}",
-                        webhookUrl,
-                        gitHubRepositoryUrl));
-
-                return hook;
-            } catch (IOException e) {
-                LOGGER.log(
-                    Level.FINEST,
-                    MessageFormat.format("Failed to add webhook {0} to GitHub repository {1}",
-                        webhookUrl,
-                        gitHubRepositoryUrl),
-                    e);
+            for (Iterator<String> iter = missingWebhookUrls.iterator(); iter.hasNext();) {
+                String webhookUrl = iter.next();
+                try {
+                    Map<String, String> config = new HashMap<String, String>();
+                    config.put("url", webhookUrl);
+                    config.put("insecure_ssl", "1");
+                    repo.createHook("web", config, WEBHOOK_EVENTS, true);
+                    LOGGER.info(
+                        MessageFormat.format(
+                            "Webhook {0} is added to GitHub repository {1}",
+                            webhookUrl,
+                            repositoryUrl));
+
+                    checkedWebHooks.put(repositoryKey + '|' + webhookUrl, System.currentTimeMillis());
+                    iter.remove();
+                } catch (IOException e) {
+                    LOGGER.log(
+                        Level.FINEST,
+                        MessageFormat.format("Failed to add webhook {0} to GitHub repository {1}",
+                            webhookUrl,
+                            repositoryUrl),
+                        e);
+                }
+            }
+            if (missingWebhookUrls.isEmpty()) {
+                return;
             }
         }
-        LOGGER.warning(
-            MessageFormat.format(
-                "Cannot add webhook {0} to GitHub repository {1}. "
-                    + "Make sure that you specified a valid GitHub credential for GitHub project {1} in Jenkins "
-                    + "configuration.",
-                webhookUrl,
-                gitHubRepositoryUrl));
-
-        return null;
+        for (String webhookUrl : missingWebhookUrls) {
+            LOGGER.warning(
+                MessageFormat.format(
+                    "Cannot add webhook {0} to GitHub repository {1}. "
+                        + "Make sure that you specified a valid GitHub credential for GitHub project {1} in Jenkins "
+                        + "configuration.",
+                    webhookUrl,
+                    repositoryUrl));
+        }
     }
 
     void handle(GHEventPayload.PullRequest prEventPayload, GitHub gitHub) throws IOException {
         GHPullRequest pullRequest = prEventPayload.getPullRequest();
         String pullRequestUrl = pullRequest.getHtmlUrl().toString();
-        if (!pullRequestUrl.startsWith(gitHubRepositoryUrl)) {
+        if (!isOfRepository(pullRequestUrl)) {
             LOGGER.config(
                 MessageFormat.format(
                     "Pull request {0} is not related to project {1}. "
@@ -356,7 +467,7 @@ public class PullRequestBuildHandler implements IBuildHandler {
         }
 
         String issueUrl = issueComment.getIssue().getHtmlUrl().toString();
-        if (!issueUrl.startsWith(gitHubRepositoryUrl)) {
+        if (!isOfRepository(issueUrl)) {
             LOGGER.finest(
                 MessageFormat.format(
                     "GitHub issue {0} is not related to project {1}. "
@@ -390,10 +501,15 @@ public class PullRequestBuildHandler implements IBuildHandler {
         final int prNumber = issueComment.getIssue().getNumber();
 
         GHPullRequest pullRequest = issueComment.getRepository().getPullRequest(prNumber);
-        // Updating PR to force the cache (if present) to refresh:
-        pullRequest.setTitle(pullRequest.getTitle() );
-
-        pullRequest = issueComment.getRepository().getPullRequest(prNumber);
+        PullRequestData knownPullRequestData = PullRequestManager.getInstance().getPullRequestData(issueUrl, project);
+        if (knownPullRequestData != null
+            && knownPullRequestData.getLastUpdated().after(pullRequest.getUpdatedAt())) {
+
+            // The response is older than the last event of the pull request, updating the pull request forces the
+            // cache (if present) to refresh
+            pullRequest.setTitle(pullRequest.getTitle() );
+            pullRequest = issueComment.getRepository().getPullRequest(prNumber);
+        }
 
         if (LOGGER.isLoggable(Level.FINE) ) {
             LOGGER.fine("ghPullRequest = " + getPullRequestAsString(pullRequest) );
@@ -419,35 +535,19 @@ public class PullRequestBuildHandler implements IBuildHandler {
             return true;
         }
 
-        Set<String> whitelistOrgNames = gitHub.getMyOrganizations().keySet();
+        Set<String> whitelistOrgNames = new HashSet<String>(GitHubConnections.getMyOrganizations(gitHub));
         whitelistOrgNames.retainAll(whitelist);
         for (String name : whitelistOrgNames) {
-            GHOrganization organization = gitHub.getOrganization(name);
-            if (organization.hasMember(user)) {
+            if (GitHubConnections.isMember(gitHub, name, user)) {
                 return true;
             }
         }
         return false;
     }
 
-    private boolean isPullRequestBuild(AbstractBuild build, String pullRequestUrl) {
-        ParametersAction parameters = build.getAction(ParametersAction.class);
-        return parameters != null
-            && parameters.getParameters().contains(new StringParameterValue("PR_URL", pullRequestUrl));
-
-    }
-
     void cancelBuilds(PullRequestData pullRequestData) {
         final String pullRequestUrl = pullRequestData.pullRequestUrl.toString();
-        List<AbstractBuild> pullRequestBuilds = new ArrayList<AbstractBuild>();
-        for (Object b : project.getBuilds()) {
-            if (b instanceof AbstractBuild) {
-                AbstractBuild build = (AbstractBuild) b;
-                if (build.isBuilding() && isPullRequestBuild(build, pullRequestUrl)) {
-                    pullRequestBuilds.add(build);
-                }
-            }
-        }
+        List<AbstractBuild<?, ?>> pullRequestBuilds = PullRequestBuildIndex.getRunningBuilds(project, pullRequestUrl);
         if (!pullRequestBuilds.isEmpty()) {
             String[] buildNumbers = new String[pullRequestBuilds.size()];
             for (int i = 0; i < pullRequestBuilds.size(); i++) {
@@ -455,7 +555,7 @@ public class PullRequestBuildHandler implements IBuildHandler {
             }
             LOGGER.info(MessageFormat.format("Aborting the following builds of pull request {0}: {1}",
                     pullRequestUrl, StringUtils.join(buildNumbers, ", ")));
-            for (AbstractBuild build : pullRequestBuilds) {
+            for (AbstractBuild<?, ?> build : pullRequestBuilds) {
                 Executor executor = build.getExecutor();
                 if (executor != null) {
                     executor.interrupt();
@@ -497,44 +597,14 @@ public class PullRequestBuildHandler implements IBuildHandler {
         parameters.add(prUrlParam);
 
         project.scheduleBuild2(project.getQuietPeriod(), cause, new ParametersAction(parameters),
-                getBuildData(prUrlParam), new RevisionParameterAction(pr.getHead().getSha()));
-    }
-
-    private BuildData getBuildData(StringParameterValue pullRequestUrlParam) {
-        for (Run<?, ?> build : project.getBuilds()) {
-            ParametersAction paramsAction = build.getAction(ParametersAction.class);
-            if (paramsAction != null) {
-                for (ParameterValue param : paramsAction.getParameters()) {
-                    if (param.equals(pullRequestUrlParam)) {
-                        List<BuildData> buildDataList = build.getActions(BuildData.class);
-                        if (!buildDataList.isEmpty()) {
-                            return buildDataList.get(0);
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+                PullRequestBuildIndex.getLastBuildData(project, prUrlParam.value),
+                new RevisionParameterAction(pr.getHead().getSha()));
     }
 
     private void deleteInstances(GHPullRequest pullRequest) throws IOException {
-        PullRequestManager pullRequestManager = PullRequestManager.getInstance();
-        List<PullRequestData> pullRequestDataList = new ArrayList<PullRequestData>();
-        Authentication old = SecurityContextHolder.getContext().getAuthentication();
-        SecurityContextHolder.getContext().setAuthentication(ACL.SYSTEM);
-        try {
-            for (AbstractProject<?,?> project : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
-
-                PullRequestData data =
-                    pullRequestManager.removePullRequestData(pullRequest.getHtmlUrl().toString(), project);
-
-                if (data != null) {
-                    pullRequestDataList.add(data);
-                }
-            }
-        } finally {
-            SecurityContextHolder.getContext().setAuthentication(old);
-        }
+        // only the projects that have pull request data are looked at
+        List<PullRequestData> pullRequestDataList =
+            PullRequestManager.getInstance().removePullRequestData(pullRequest.getHtmlUrl().toString());
         PullRequestCleanup.deleteInstances(pullRequestDataList, pullRequest);
     }
 
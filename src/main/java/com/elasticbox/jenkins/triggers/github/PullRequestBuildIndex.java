@@ -0,0 +1,154 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.triggers.github;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.StringParameterValue;
+import hudson.plugins.git.util.BuildData;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the builds of the pull requests, kept up to date by {@link PullRequestBuildListener}, so that the running
+ * builds of a pull request and the git build data of its last build are found without loading the build history of
+ * the project. The running builds are only kept in memory, the number of the last build of a pull request is kept in
+ * its {@link PullRequestData}.
+ */
+final class PullRequestBuildIndex {
+    private static final Logger LOGGER = Logger.getLogger(PullRequestBuildIndex.class.getName());
+
+    // pull request URL -> running builds of the pull request
+    private static final ConcurrentHashMap<String, Set<AbstractBuild<?, ?>>> runningBuilds =
+            new ConcurrentHashMap<String, Set<AbstractBuild<?, ?>>>();
+
+    private PullRequestBuildIndex() {
+    }
+
+    /**
+     * Gets the URL of the pull request built by a build.
+     *
+     * @param build the build
+     * @return the value of the parameter {@link PullRequestBuildHandler#PR_URL} of the build or null if the build is
+     *     not a pull request build
+     */
+    static String getPullRequestUrl(AbstractBuild<?, ?> build) {
+        ParametersAction parameters = build.getAction(ParametersAction.class);
+        if (parameters != null) {
+            ParameterValue parameter = parameters.getParameter(PullRequestBuildHandler.PR_URL);
+            if (parameter instanceof StringParameterValue) {
+                return ((StringParameterValue) parameter).value;
+            }
+        }
+        return null;
+    }
+
+    static void onStarted(AbstractBuild<?, ?> build) {
+        String pullRequestUrl = getPullRequestUrl(build);
+        if (pullRequestUrl == null) {
+            return;
+        }
+
+        Set<AbstractBuild<?, ?>> builds = runningBuilds.get(pullRequestUrl);
+        if (builds == null) {
+            runningBuilds.putIfAbsent(pullRequestUrl,
+                    Collections.newSetFromMap(new ConcurrentHashMap<AbstractBuild<?, ?>, Boolean>()));
+            builds = runningBuilds.get(pullRequestUrl);
+        }
+        builds.add(build);
+    }
+
+    static void onCompleted(AbstractBuild<?, ?> build) {
+        String pullRequestUrl = getPullRequestUrl(build);
+        if (pullRequestUrl == null) {
+            return;
+        }
+
+        Set<AbstractBuild<?, ?>> builds = runningBuilds.get(pullRequestUrl);
+        if (builds != null) {
+            builds.remove(build);
+            if (builds.isEmpty()) {
+                runningBuilds.remove(pullRequestUrl, builds);
+            }
+        }
+
+        if (build.getAction(BuildData.class) == null) {
+            return;
+        }
+        PullRequestData pullRequestData =
+                PullRequestManager.getInstance().getPullRequestData(pullRequestUrl, build.getProject());
+        if (pullRequestData != null && pullRequestData.setLastBuildNumber(build.getNumber())) {
+            try {
+                pullRequestData.save();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, MessageFormat.format("Error saving the last build of pull request {0}",
+                        pullRequestUrl), ex);
+            }
+        }
+    }
+
+    /**
+     * Gets the running builds of a pull request in a project.
+     *
+     * @param project the project
+     * @param pullRequestUrl the URL of the pull request
+     * @return the builds of the pull request in the project that are still running
+     */
+    static List<AbstractBuild<?, ?>> getRunningBuilds(AbstractProject<?, ?> project, String pullRequestUrl) {
+        List<AbstractBuild<?, ?>> projectBuilds = new ArrayList<AbstractBuild<?, ?>>();
+        Set<AbstractBuild<?, ?>> builds = runningBuilds.get(pullRequestUrl);
+        if (builds != null) {
+            for (AbstractBuild<?, ?> build : builds) {
+                if (build.getParent() == project && build.isBuilding()) {
+                    projectBuilds.add(build);
+                }
+            }
+        }
+        return projectBuilds;
+    }
+
+    /**
+     * Gets the git build data of the last build of a pull request in a project, loading only that build.
+     *
+     * @param project the project
+     * @param pullRequestUrl the URL of the pull request
+     * @return the build data or null if no build of the pull request with git build data is known
+     */
+    static BuildData getLastBuildData(AbstractProject<?, ?> project, String pullRequestUrl) {
+        PullRequestData pullRequestData = PullRequestManager.getInstance().getPullRequestData(pullRequestUrl, project);
+        if (pullRequestData == null || pullRequestData.getLastBuildNumber() == null) {
+            return null;
+        }
+
+        AbstractBuild<?, ?> build = project.getBuildByNumber(pullRequestData.getLastBuildNumber());
+        if (build == null) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(MessageFormat.format("Last build {0} of pull request {1} has been deleted",
+                        pullRequestData.getLastBuildNumber(), pullRequestUrl));
+            }
+            return null;
+        }
+        return build.getAction(BuildData.class);
+    }
+
+}
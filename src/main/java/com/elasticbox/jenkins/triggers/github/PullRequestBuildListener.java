@@ -76,6 +76,7 @@ public class PullRequestBuildListener extends RunListener<AbstractBuild<?, ?>> {
 
     @Override
     public void onStarted(AbstractBuild<?, ?> build, TaskListener listener) {
+        PullRequestBuildIndex.onStarted(build);
         TriggerCause cause = build.getCause(TriggerCause.class);
         if (cause == null) {
             return;
@@ -104,6 +105,7 @@ public class PullRequestBuildListener extends RunListener<AbstractBuild<?, ?>> {
 
     @Override
     public void onCompleted(AbstractBuild<?, ?> build, TaskListener listener) {
+        PullRequestBuildIndex.onCompleted(build);
         TriggerCause cause = build.getCause(TriggerCause.class);
         if (cause == null) {
             return;
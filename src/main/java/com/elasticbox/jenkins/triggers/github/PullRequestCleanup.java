@@ -21,6 +21,8 @@ import com.elasticbox.jenkins.util.ClientCache;
 import hudson.Extension;
 import hudson.model.AsyncPeriodicWork;
 import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
 
 import jenkins.model.Jenkins;
 
@@ -37,12 +39,17 @@ import java.text.MessageFormat;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -55,6 +62,18 @@ public class PullRequestCleanup extends AsyncPeriodicWork {
 
     private static final Logger LOGGER = Logger.getLogger(PullRequestCleanup.class.getName());
 
+    private static final int MAX_CONCURRENT_REPOSITORIES =
+        Integer.getInteger(PullRequestCleanup.class.getName() + ".maxConcurrentRepositories", 4);
+
+    // number of pull requests in a page of the GitHub API
+    private static final int PAGE_SIZE = 30;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_REPOSITORIES,
+        new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+
+    private static final Set<String> closeEventPullRequestUrls =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     public PullRequestCleanup() {
         super(PullRequestCleanup.class.getName());
     }
@@ -62,7 +81,7 @@ public class PullRequestCleanup extends AsyncPeriodicWork {
     @Override
     protected void execute(TaskListener listener) throws IOException {
 
-        Map<String, List<PullRequestData>> pullRequestDataLookup = new HashMap<String, List<PullRequestData>>();
+        final Map<String, List<PullRequestData>> pullRequestDataLookup = new HashMap<String, List<PullRequestData>>();
 
         Map<String, Set<String>> pullRequestUrlsLookup = new HashMap<String, Set<String>>();
 
@@ -92,61 +111,169 @@ public class PullRequestCleanup extends AsyncPeriodicWork {
             }
         }
 
-        for (Map.Entry<String, Set<String>> entry : pullRequestUrlsLookup.entrySet()) {
+        skipClosedPullRequests(pullRequestUrlsLookup, pollCloseEventPullRequestUrls());
 
-            GitHubRepositoryName repoName = GitHubRepositoryName.create(entry.getKey());
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Map.Entry<String, Set<String>> entry : pullRequestUrlsLookup.entrySet()) {
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    cleanup(entry.getKey(), entry.getValue(), pullRequestDataLookup);
+                    return null;
+                }
+            });
+        }
 
-            GitHub gitHub = PullRequestManager.getInstance().createGitHub(repoName);
+        try {
+            executor.invokeAll(tasks);
+        } catch (InterruptedException ex) {
+            LOGGER.warning("The cleanup of the pull requests was interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            if (gitHub != null) {
-                try {
-                    GHRepository repo = gitHub.getRepository(
-                        MessageFormat.format("{0}/{1}", repoName.getUserName(), repoName.getRepositoryName()));
+    /**
+     * Records that the web hook delivered the close event of a pull request, so the next cleanup can skip it.
+     *
+     * @param pullRequestUrl the HTML URL of the pull request
+     */
+    static void closeEventReceived(String pullRequestUrl) {
+        closeEventPullRequestUrls.add(pullRequestUrl);
+    }
 
-                    Set<String> openPullRequestUrls = new HashSet<String>();
-                    for (GHPullRequest ghPullRequest : repo.getPullRequests(GHIssueState.OPEN)) {
-                        openPullRequestUrls.add(ghPullRequest.getHtmlUrl().toString());
-                    }
+    /**
+     * Gets the pull requests whose close events were delivered by the web hook since the last call.
+     */
+    static Set<String> pollCloseEventPullRequestUrls() {
+        Set<String> pullRequestUrls = new HashSet<String>(closeEventPullRequestUrls);
+        closeEventPullRequestUrls.removeAll(pullRequestUrls);
+        return pullRequestUrls;
+    }
 
-                    for (String pullRequestUrl : entry.getValue()) {
-                        if (!openPullRequestUrls.contains(pullRequestUrl)) {
+    /**
+     * Removes the pull requests whose close events were delivered by the web hook, they don't need to be checked. The
+     * other pull requests of their repositories are still checked in case a close event was missed, and the
+     * repositories left without pull requests to check are removed.
+     *
+     * @param pullRequestUrlsLookup repository URL -> URLs of the pull requests to check
+     * @param closedPullRequestUrls the URLs of the pull requests whose close events were delivered
+     */
+    static void skipClosedPullRequests(Map<String, Set<String>> pullRequestUrlsLookup,
+                                       Set<String> closedPullRequestUrls) {
+        for (Iterator<Map.Entry<String, Set<String>>> iter = pullRequestUrlsLookup.entrySet().iterator();
+                iter.hasNext();) {
+            Map.Entry<String, Set<String>> entry = iter.next();
+            entry.getValue().removeAll(closedPullRequestUrls);
+            if (entry.getValue().isEmpty()) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(MessageFormat.format("Skipping the cleanup of the pull requests of {0}, the web hook "
+                            + "delivered the close events of all of them since the last cleanup", entry.getKey()));
+                }
+                iter.remove();
+            }
+        }
+    }
 
-                            LOGGER.info(
-                                MessageFormat.format(
-                                    "Pull request {0} is closed. Deleting its data and deployed instances",
-                                    pullRequestUrl)
-                            );
+    /**
+     * Checks whether fetching each pull request of a repository takes fewer API requests than listing its open pull
+     * requests. The open issue count includes the pull requests, so it gives the most pages that listing them can
+     * take.
+     *
+     * @param pullRequests the number of pull requests to check
+     * @param openIssueCount the number of open issues of the repository
+     */
+    static boolean isFetchingEachPullRequest(int pullRequests, int openIssueCount) {
+        return pullRequests <= (openIssueCount + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
 
-                            List<PullRequestData> closedPullRequestDataList = pullRequestDataLookup.get(pullRequestUrl);
-                            for (PullRequestData pullRequestData : closedPullRequestDataList) {
+    /**
+     * Gets the pull requests that are not among the open pull requests of their repository.
+     */
+    static Set<String> getClosedPullRequestUrls(Set<String> pullRequestUrls, Set<String> openPullRequestUrls) {
+        Set<String> closedPullRequestUrls = new HashSet<String>(pullRequestUrls);
+        closedPullRequestUrls.removeAll(openPullRequestUrls);
+        return closedPullRequestUrls;
+    }
 
-                                try {
-                                    PullRequestManager
-                                        .getInstance()
-                                        .removePullRequestData(pullRequestUrl, pullRequestData.getProject());
+    private void cleanup(String repositoryUrl, Set<String> pullRequestUrls,
+                         Map<String, List<PullRequestData>> pullRequestDataLookup) {
 
-                                } catch (IOException ex) {
-                                    LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                                }
-                            }
+        GitHubRepositoryName repoName = GitHubRepositoryName.create(repositoryUrl);
 
-                            try {
+        GitHub gitHub = PullRequestManager.getInstance().createGitHub(repoName);
 
-                                GHPullRequest closedPullRequest = repo.getPullRequest(
-                                    getPullRequestNumber(pullRequestUrl));
+        if (gitHub == null) {
+            return;
+        }
 
-                                deleteInstances(closedPullRequestDataList, closedPullRequest);
+        if (!GitHubConnections.hasBackgroundQuota(gitHub)) {
+            LOGGER.info(MessageFormat.format("Skipping the cleanup of the pull requests of {0} until more GitHub "
+                    + "API requests are available", repositoryUrl));
+            return;
+        }
 
-                            } catch (IOException ex) {
-                                LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                            }
+        try {
+            GHRepository repo = gitHub.getRepository(
+                MessageFormat.format("{0}/{1}", repoName.getUserName(), repoName.getRepositoryName()));
+
+            // pull request URL -> closed pull request, null if it is not fetched yet
+            Map<String, GHPullRequest> closedPullRequests = new HashMap<String, GHPullRequest>();
+
+            if (isFetchingEachPullRequest(pullRequestUrls.size(), repo.getOpenIssueCount())) {
+                for (String pullRequestUrl : pullRequestUrls) {
+                    try {
+                        GHPullRequest pullRequest = repo.getPullRequest(getPullRequestNumber(pullRequestUrl));
+                        if (pullRequest.getState() == GHIssueState.CLOSED) {
+                            closedPullRequests.put(pullRequestUrl, pullRequest);
                         }
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
                     }
+                }
+            } else {
+                Set<String> openPullRequestUrls = new HashSet<String>();
+                for (GHPullRequest ghPullRequest : repo.listPullRequests(GHIssueState.OPEN)) {
+                    openPullRequestUrls.add(ghPullRequest.getHtmlUrl().toString());
+                }
+                for (String pullRequestUrl : getClosedPullRequestUrls(pullRequestUrls, openPullRequestUrls)) {
+                    closedPullRequests.put(pullRequestUrl, null);
+                }
+            }
+
+            for (Map.Entry<String, GHPullRequest> entry : closedPullRequests.entrySet()) {
+                String pullRequestUrl = entry.getKey();
+
+                LOGGER.info(
+                    MessageFormat.format(
+                        "Pull request {0} is closed. Deleting its data and deployed instances",
+                        pullRequestUrl)
+                );
+
+                List<PullRequestData> closedPullRequestDataList = pullRequestDataLookup.get(pullRequestUrl);
+                for (PullRequestData pullRequestData : closedPullRequestDataList) {
+
+                    try {
+                        PullRequestManager
+                            .getInstance()
+                            .removePullRequestData(pullRequestUrl, pullRequestData.getProject());
+
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                    }
+                }
+
+                try {
+
+                    GHPullRequest closedPullRequest = entry.getValue() != null
+                        ? entry.getValue() : repo.getPullRequest(getPullRequestNumber(pullRequestUrl));
+
+                    deleteInstances(closedPullRequestDataList, closedPullRequest);
+
                 } catch (IOException ex) {
                     LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
                 }
             }
-
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
         }
     }
 
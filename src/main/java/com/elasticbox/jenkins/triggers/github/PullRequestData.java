@@ -20,6 +20,7 @@ import org.kohsuke.github.GHPullRequest;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -29,6 +30,7 @@ public class PullRequestData {
     public final String pullRequestUrl;
     private Date lastUpdated;
     private String headSha;
+    private Integer lastBuildNumber;
     private final List<PullRequestInstance> instances;
 
     private transient ProjectData projectData;
@@ -53,8 +55,44 @@ public class PullRequestData {
         return headSha;
     }
 
+    /**
+     * Gets the number of the last build of the pull request that has git build data.
+     */
+    public Integer getLastBuildNumber() {
+        return lastBuildNumber;
+    }
+
+    synchronized boolean setLastBuildNumber(int buildNumber) {
+        if (lastBuildNumber != null && lastBuildNumber >= buildNumber) {
+            return false;
+        }
+        lastBuildNumber = buildNumber;
+        return true;
+    }
+
     public List<PullRequestInstance> getInstances() {
-        return instances;
+        synchronized (projectData) {
+            return new ArrayList<PullRequestInstance>(instances);
+        }
+    }
+
+    // the instances are changed under the lock of the project data, which is held while the data is written
+    void addInstance(PullRequestInstance instance) {
+        synchronized (projectData) {
+            instances.add(instance);
+        }
+    }
+
+    boolean removeInstance(String instanceId) {
+        synchronized (projectData) {
+            for (Iterator<PullRequestInstance> iter = instances.iterator(); iter.hasNext();) {
+                if (iter.next().id.equals(instanceId)) {
+                    iter.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     public boolean update(GHPullRequest pullRequest) throws IOException {
@@ -95,14 +133,19 @@ public class PullRequestData {
         if (dataList == null) {
             projectData.add(new PullRequests());
         }
-        if (!dataList.contains(this)) {
-            dataList.add(this);
+        synchronized (projectData) {
+            if (!dataList.contains(this)) {
+                dataList.add(this);
+            }
         }
         projectData.save();
     }
 
     public void remove() throws IOException {
-        projectData.get(PullRequests.class).getData().remove(this);
+        // the pull requests of different repositories of a project may be removed at the same time by the cleanup
+        synchronized (projectData) {
+            projectData.get(PullRequests.class).getData().remove(this);
+        }
         projectData.save();
     }
 
@@ -15,11 +15,23 @@ package com.elasticbox.jenkins.triggers.github;
 public class PullRequestInstance {
     public final String id;
     public final String cloud;
+    // ID of the workspace of the instance, ID of the build step that deployed the instance and ID of the box version
+    // deployed, null for older instances
+    public final String workspace;
+    public final String builderId;
+    public final String boxVersion;
 
     public PullRequestInstance(String id, String cloud) {
+        this(id, cloud, null, null, null);
+    }
+
+    public PullRequestInstance(String id, String cloud, String workspace, String builderId, String boxVersion) {
         assert id != null & cloud != null;
         this.id = id;
         this.cloud = cloud;
+        this.workspace = workspace;
+        this.builderId = builderId;
+        this.boxVersion = boxVersion;
     }
 
     @Override
@@ -34,6 +46,11 @@ public class PullRequestInstance {
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return 31 * id.hashCode() + cloud.hashCode();
+    }
+
     @Override
     public String toString() {
         return id;
@@ -13,7 +13,6 @@
 package com.elasticbox.jenkins.triggers.github;
 
 import static java.text.MessageFormat.format;
-import static org.jenkinsci.plugins.github.config.GitHubServerConfig.withHost;
 
 import com.cloudbees.jenkins.GitHubRepositoryName;
 import com.elasticbox.jenkins.ElasticBoxCloud;
@@ -34,7 +33,7 @@ import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 import org.acegisecurity.Authentication;
 import org.acegisecurity.context.SecurityContextHolder;
-import org.jenkinsci.plugins.github.GitHubPlugin;
+import org.apache.commons.lang.StringUtils;
 import org.kohsuke.github.GHEventPayload;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GitHub;
@@ -42,10 +41,15 @@ import org.kohsuke.github.GitHub;
 import java.io.IOException;
 import java.io.StringReader;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
@@ -80,11 +84,75 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
     final ConcurrentHashMap<AbstractProject, ConcurrentHashMap<String, PullRequestData>> projectPullRequestDataLookup =
             new ConcurrentHashMap<AbstractProject, ConcurrentHashMap<String, PullRequestData>>();
 
+    // ID of an instance deployed by a pull request build -> data of the pull request
+    private final ConcurrentHashMap<String, PullRequestData> instancePullRequestDataLookup =
+            new ConcurrentHashMap<String, PullRequestData>();
+
+    // normalized GitHub repository URL -> projects whose pull request trigger watches the repository
+    private final ConcurrentHashMap<String, Set<AbstractProject<?, ?>>> repositoryProjectsLookup =
+            new ConcurrentHashMap<String, Set<AbstractProject<?, ?>>>();
+
     @Override
     public PullRequestBuildHandler createBuildHandler(AbstractProject<?, ?> project, boolean newTrigger)
         throws IOException {
 
-        return new PullRequestBuildHandler(project, newTrigger);
+        removeProject(project);
+        PullRequestBuildHandler buildHandler = new PullRequestBuildHandler(project, newTrigger);
+        addProject(buildHandler.getGitHubRepositoryUrl(), project);
+        return buildHandler;
+    }
+
+    @Override
+    public void removeBuildHandler(AbstractProject<?, ?> project) {
+        removeProject(project);
+    }
+
+    /**
+     * Indexes a project under the repository URL resolved by its build handler after the handler was created.
+     *
+     * @param project the project
+     * @param buildHandler the build handler of the project
+     */
+    void updateRepositoryUrl(AbstractProject<?, ?> project, PullRequestBuildHandler buildHandler) {
+        PullRequestBuildTrigger trigger = project.getTrigger(PullRequestBuildTrigger.class);
+        // the build handler is not set to the trigger yet if it is resolved while the trigger is starting
+        if (trigger != null && (trigger.getBuildHandler() == null || trigger.getBuildHandler() == buildHandler)) {
+            removeProject(project);
+            addProject(buildHandler.getGitHubRepositoryUrl(), project);
+        }
+    }
+
+    static String normalizeRepositoryUrl(String repositoryUrl) {
+        String url = StringUtils.removeEnd(StringUtils.removeEnd(repositoryUrl.trim(), "/"), ".git");
+        return url.toLowerCase(Locale.ENGLISH);
+    }
+
+    private void addProject(String repositoryUrl, AbstractProject<?, ?> project) {
+        String key = normalizeRepositoryUrl(repositoryUrl);
+        Set<AbstractProject<?, ?>> projects = repositoryProjectsLookup.get(key);
+        if (projects == null) {
+            repositoryProjectsLookup.putIfAbsent(key,
+                    Collections.newSetFromMap(new ConcurrentHashMap<AbstractProject<?, ?>, Boolean>()));
+            projects = repositoryProjectsLookup.get(key);
+        }
+        projects.add(project);
+    }
+
+    private void removeProject(AbstractProject<?, ?> project) {
+        for (Set<AbstractProject<?, ?>> projects : repositoryProjectsLookup.values()) {
+            projects.remove(project);
+        }
+    }
+
+    /**
+     * Gets the projects with a pull request trigger for a GitHub repository.
+     *
+     * @param repositoryUrl the URL of the GitHub repository
+     * @return the projects, an empty collection if there is none
+     */
+    Collection<AbstractProject<?, ?>> getProjects(String repositoryUrl) {
+        Set<AbstractProject<?, ?>> projects = repositoryProjectsLookup.get(normalizeRepositoryUrl(repositoryUrl));
+        return projects != null ? projects : Collections.<AbstractProject<?, ?>>emptySet();
     }
 
     public PullRequestData addPullRequestData(GHPullRequest pullRequest, AbstractProject project) throws IOException {
@@ -125,11 +193,55 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
         ConcurrentHashMap<String, PullRequestData> pullRequestDataMap = projectPullRequestDataLookup.get(project);
         PullRequestData pullRequestData = pullRequestDataMap != null ? pullRequestDataMap.remove(pullRequestUrl) : null;
         if (pullRequestData != null) {
+            removeInstances(pullRequestData);
             pullRequestData.remove();
         }
         return pullRequestData;
     }
 
+    private void addInstances(PullRequestData pullRequestData) {
+        for (PullRequestInstance instance : pullRequestData.getInstances()) {
+            instancePullRequestDataLookup.put(instance.id, pullRequestData);
+        }
+    }
+
+    private void removeInstances(PullRequestData pullRequestData) {
+        for (PullRequestInstance instance : pullRequestData.getInstances()) {
+            instancePullRequestDataLookup.remove(instance.id, pullRequestData);
+        }
+    }
+
+    private void addInstance(PullRequestData pullRequestData, PullRequestInstance instance) throws IOException {
+        pullRequestData.addInstance(instance);
+        instancePullRequestDataLookup.put(instance.id, pullRequestData);
+        pullRequestData.save();
+    }
+
+    private void removeInstance(String instanceId) throws IOException {
+        PullRequestData pullRequestData = instancePullRequestDataLookup.remove(instanceId);
+        if (pullRequestData != null && pullRequestData.removeInstance(instanceId)) {
+            pullRequestData.save();
+        }
+    }
+
+    /**
+     * Removes the data of a pull request from all the projects that have it.
+     *
+     * @param pullRequestUrl the URL of the pull request
+     * @return the removed data
+     * @throws IOException if the data cannot be removed
+     */
+    public List<PullRequestData> removePullRequestData(String pullRequestUrl) throws IOException {
+        List<PullRequestData> pullRequestDataList = new ArrayList<PullRequestData>();
+        for (AbstractProject project : projectPullRequestDataLookup.keySet()) {
+            PullRequestData data = removePullRequestData(pullRequestUrl, project);
+            if (data != null) {
+                pullRequestDataList.add(data);
+            }
+        }
+        return pullRequestDataList;
+    }
+
 
     public GitHub createGitHub(GitHubRepositoryName gitHubRepoName) {
 
@@ -142,27 +254,26 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
                     gitHubRepoName)
             );
         } else {
-            LOGGER.info("Connected to GitHub Repo: " + gitHubRepoName);
+            LOGGER.fine("Connected to GitHub Repo: " + gitHubRepoName);
         }
 
         return gitHub;
     }
 
     private GitHub createGitHub(JSONObject payload) {
-        String repoUrl = payload.getJSONObject("repository").getString("html_url");
-        return createGitHub(GitHubRepositoryName.create(repoUrl));
+        return createGitHub(GitHubRepositoryName.create(getRepositoryUrl(payload)));
     }
 
-    private GitHub connect(GitHubRepositoryName gitHubRepoName) {
-        Iterator<GitHub> withAuth = GitHubPlugin.configuration()
-                .findGithubConfig(withHost(gitHubRepoName.getHost())).iterator();
+    private static String getRepositoryUrl(JSONObject payload) {
+        return payload.getJSONObject("repository").getString("html_url");
+    }
 
-        if (withAuth.hasNext()) {
-            return withAuth.next();
-        } else {
+    private GitHub connect(GitHubRepositoryName gitHubRepoName) {
+        GitHub gitHub = GitHubConnections.getGitHub(gitHubRepoName.getHost());
+        if (gitHub == null) {
             LOGGER.warning(format("Cannot find any credential for GitHub at {0}", gitHubRepoName.getHost()));
-            return null;
         }
+        return gitHub;
     }
 
 
@@ -179,7 +290,14 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
 
     private void handlePullRequestEvent(String payload) throws IOException {
 
-        GitHub gitHub = createGitHub(JSONObject.fromObject(payload));
+        JSONObject payloadJson = JSONObject.fromObject(payload);
+        Collection<AbstractProject<?, ?>> projects = getProjects(getRepositoryUrl(payloadJson));
+        if (projects.isEmpty()) {
+            LOGGER.fine("No project is triggered by the pull requests of " + getRepositoryUrl(payloadJson));
+            return;
+        }
+
+        GitHub gitHub = createGitHub(payloadJson);
 
         if (gitHub == null) {
             return;
@@ -188,11 +306,15 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
         GHEventPayload.PullRequest pullRequest
             = gitHub.parseEventPayload(new StringReader(payload), GHEventPayload.PullRequest.class);
 
+        if (PullRequestAction.CLOSED.equals(pullRequest.getAction())) {
+            PullRequestCleanup.closeEventReceived(pullRequest.getPullRequest().getHtmlUrl().toString());
+        }
+
         if (SUPPORTED_EVENTS.contains(pullRequest.getAction())) {
             Authentication old = SecurityContextHolder.getContext().getAuthentication();
             SecurityContextHolder.getContext().setAuthentication(ACL.SYSTEM);
             try {
-                for (AbstractProject<?,?> job : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
+                for (AbstractProject<?,?> job : projects) {
                     PullRequestBuildTrigger trigger = job.getTrigger(PullRequestBuildTrigger.class);
                     if (trigger != null && trigger.getBuildHandler() instanceof PullRequestBuildHandler) {
                         ((PullRequestBuildHandler) trigger.getBuildHandler()).handle(pullRequest, gitHub);
@@ -208,7 +330,14 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
 
     private void handleIssueCommentEvent(String payload) throws IOException {
 
-        GitHub gitHub = createGitHub(JSONObject.fromObject(payload));
+        JSONObject payloadJson = JSONObject.fromObject(payload);
+        Collection<AbstractProject<?, ?>> projects = getProjects(getRepositoryUrl(payloadJson));
+        if (projects.isEmpty()) {
+            LOGGER.fine("No project is triggered by the pull requests of " + getRepositoryUrl(payloadJson));
+            return;
+        }
+
+        GitHub gitHub = createGitHub(payloadJson);
 
         if (gitHub == null) {
             return;
@@ -234,7 +363,7 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
         Authentication old = SecurityContextHolder.getContext().getAuthentication();
         SecurityContextHolder.getContext().setAuthentication(ACL.SYSTEM);
         try {
-            for (AbstractProject<?,?> job : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
+            for (AbstractProject<?,?> job : projects) {
                 PullRequestBuildTrigger trigger = job.getTrigger(PullRequestBuildTrigger.class);
                 if (trigger != null && trigger.getBuildHandler() instanceof PullRequestBuildHandler) {
                     ((PullRequestBuildHandler) trigger.getBuildHandler()).handle(issueComment, gitHub);
@@ -248,10 +377,7 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
     @Extension
     public static final class BuilderListenerImpl extends BuilderListener {
 
-        @Override
-        public void onDeploying(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud)
-            throws IOException, InterruptedException {
-
+        private static AbstractBuild<?, ?> getRootBuild(AbstractBuild<?, ?> build) {
             AbstractBuild<?, ?> rootBuild = build;
             for (Cause.UpstreamCause upstreamCause = build.getCause(Cause.UpstreamCause.class); upstreamCause != null;
                     upstreamCause = rootBuild.getCause(Cause.UpstreamCause.class)) {
@@ -261,7 +387,21 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
                 }
                 rootBuild = (AbstractBuild<?, ?>) run;
             }
+            return rootBuild;
+        }
+
+        @Override
+        public void onDeploying(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud)
+            throws IOException, InterruptedException {
 
+            onDeploying(build, instanceId, cloud, null, null, null);
+        }
+
+        @Override
+        public void onDeploying(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud, String workspace,
+                                String builderId, String boxVersion) throws IOException, InterruptedException {
+
+            AbstractBuild<?, ?> rootBuild = getRootBuild(build);
             TriggerCause cause = rootBuild.getCause(TriggerCause.class);
             if (cause == null) {
                 return;
@@ -275,29 +415,44 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
                 if (data == null) {
                     data = getInstance().addPullRequestData(cause.getPullRequest(), rootBuild.getProject());
                 }
-                data.getInstances().add(new PullRequestInstance(instanceId, cloud.name));
-                data.save();
+                getInstance().addInstance(data,
+                    new PullRequestInstance(instanceId, cloud.name, workspace, builderId, boxVersion));
             }
         }
 
         @Override
-        public void onTerminating(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud)
-            throws IOException, InterruptedException {
+        public Map<String, String> getReusableInstances(AbstractBuild<?, ?> build, ElasticBoxCloud cloud,
+                                                        String builderId) {
 
-            final Collection<ConcurrentHashMap<String, PullRequestData>> values = getInstance()
-                .projectPullRequestDataLookup.values();
-
-            for (ConcurrentHashMap<String, PullRequestData> prDataLookup : values) {
-                for (PullRequestData data : prDataLookup.values()) {
-                    for (Iterator<PullRequestInstance> it = data.getInstances().iterator(); it.hasNext();) {
-                        if (it.next().id.equals(instanceId)) {
-                            it.remove();
-                            data.save();
-                            return;
-                        }
-                    }
+            AbstractBuild<?, ?> rootBuild = getRootBuild(build);
+            TriggerCause cause = rootBuild.getCause(TriggerCause.class);
+            PullRequestBuildTrigger trigger = rootBuild.getProject().getTrigger(PullRequestBuildTrigger.class);
+            if (cause == null || trigger == null || !trigger.isReuseInstances()) {
+                return Collections.emptyMap();
+            }
+
+            PullRequestData data = getInstance().getPullRequestData(cause.getPullRequest().getHtmlUrl().toString(),
+                rootBuild.getProject());
+            if (data == null) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, String> instances = new HashMap<String, String>();
+            for (PullRequestInstance instance : data.getInstances()) {
+                if (instance.boxVersion != null && cloud.name.equals(instance.cloud)
+                    && builderId.equals(instance.builderId)) {
+
+                    instances.put(instance.id, instance.boxVersion);
                 }
             }
+            return instances;
+        }
+
+        @Override
+        public void onTerminating(AbstractBuild<?, ?> build, String instanceId, ElasticBoxCloud cloud)
+            throws IOException, InterruptedException {
+
+            getInstance().removeInstance(instanceId);
         }
 
     }
@@ -323,6 +478,7 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
 
                 for (PullRequestData pullRequestData : pullRequests.getData()) {
                     pullRequestDataLookup.put(pullRequestData.pullRequestUrl.toString(), pullRequestData);
+                    manager.addInstances(pullRequestData);
                 }
 
                 manager.projectPullRequestDataLookup.put(projectData.getProject(), pullRequestDataLookup);
@@ -337,6 +493,14 @@ public class PullRequestManager extends BuildManager<PullRequestBuildHandler> {
         @Override
         public void onDeleted(Item item) {
             if (item instanceof AbstractProject) {
+                getInstance().removeProject((AbstractProject<?, ?>) item);
+                ConcurrentHashMap<String, PullRequestData> pullRequestDataMap =
+                    getInstance().projectPullRequestDataLookup.remove(item);
+                if (pullRequestDataMap != null) {
+                    for (PullRequestData pullRequestData : pullRequestDataMap.values()) {
+                        getInstance().removeInstances(pullRequestData);
+                    }
+                }
                 ProjectData.removeInstance((AbstractProject) item);
             }
         }
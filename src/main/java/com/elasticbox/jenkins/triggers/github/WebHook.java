@@ -19,11 +19,11 @@ import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.interceptor.RequirePOST;
 
-import java.io.IOException;
-import java.text.MessageFormat;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.http.HttpServletResponse;
+
 @Extension
 public class WebHook implements UnprotectedRootAction {
     private static final Logger LOGGER = Logger.getLogger(WebHook.class.getName());
@@ -52,11 +52,10 @@ public class WebHook implements UnprotectedRootAction {
                 LOGGER.finest("Received event payload: " + payload);
             }
 
-            try {
-                PullRequestManager.getInstance().handleEvent(event, payload);
-            } catch (IOException ex) {
-                LOGGER.log(Level.SEVERE, MessageFormat.format("Error handling GitHub event: {0}", event), ex);
-                LOGGER.severe(MessageFormat.format("Event payload: {0}", payload));
+            // the event is handled in the background, GitHub gives up on web hooks that take long to respond
+            if (!WebHookEventQueue.getInstance().submit(event, payload)) {
+                LOGGER.warning("Too many GitHub events waiting to be handled, rejecting event: " + event);
+                rsp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
             }
         }
     }
@@ -0,0 +1,301 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.triggers.github;
+
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+
+import jenkins.model.Jenkins;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queue of the GitHub events received by {@link WebHook}, so that the web hook is acknowledged right away and the
+ * events are handled in the background. The events of the same pull request are handled one at a time in the order
+ * they were received, and a synchronize event that is still waiting is replaced by the next synchronize event of the
+ * same pull request. Each event waiting or being handled is kept in its own file in
+ * JENKINS_HOME/elasticbox-webhook-queue, written once when the event is received and deleted once it is handled, and
+ * the events left there are handled again after a restart.
+ */
+public final class WebHookEventQueue {
+    private static final Logger LOGGER = Logger.getLogger(WebHookEventQueue.class.getName());
+
+    private static final int MAX_PENDING_EVENTS =
+            Integer.getInteger(WebHookEventQueue.class.getName() + ".maxPendingEvents", 1000);
+    private static final int MAX_WORKERS = Integer.getInteger(WebHookEventQueue.class.getName() + ".maxWorkers", 4);
+
+    private static final String PULL_REQUEST_EVENT = "pull_request";
+
+    private static WebHookEventQueue instance;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(MAX_WORKERS,
+            new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+
+    private static final AtomicLong eventCounter = new AtomicLong();
+
+    private final File queueDir;
+    private final int maxPendingEvents;
+    private final LinkedList<Event> pendingEvents = new LinkedList<Event>();
+
+    // pull request key -> event being handled
+    private final Map<String, Event> activeEvents = new HashMap<String, Event>();
+
+    /**
+     * @param queueDir the directory where the files of the events are kept
+     * @param maxPendingEvents the number of events that can be waiting to be handled
+     */
+    WebHookEventQueue(File queueDir, int maxPendingEvents) {
+        this.queueDir = queueDir;
+        this.maxPendingEvents = maxPendingEvents;
+    }
+
+    static synchronized WebHookEventQueue getInstance() {
+        if (instance == null) {
+            instance = new WebHookEventQueue(new File(Jenkins.getInstance().getRootDir(), "elasticbox-webhook-queue"),
+                    MAX_PENDING_EVENTS);
+        }
+        return instance;
+    }
+
+    static final class Event {
+        private final String id;
+        private final String type;
+        private final String key;
+        private final String action;
+        private final long receivedAt;
+        private volatile String payload;
+        private transient boolean handled;
+
+        Event(String type, String payload) {
+            this.type = type;
+            this.payload = payload;
+            this.receivedAt = System.currentTimeMillis();
+            this.id = receivedAt + "-" + eventCounter.incrementAndGet();
+
+            String url = null;
+            String eventAction = null;
+            try {
+                JSONObject json = JSONObject.fromObject(payload);
+                eventAction = json.optString("action", null);
+                JSONObject pullRequest = json.optJSONObject(PULL_REQUEST_EVENT.equals(type) ? "pull_request" : "issue");
+                if (pullRequest != null && !pullRequest.isNullObject()) {
+                    url = pullRequest.optString("html_url", null);
+                }
+            } catch (JSONException ex) {
+                LOGGER.log(Level.FINE, "Cannot read the pull request of the GitHub event", ex);
+            }
+            // events that are not about a pull request are not ordered with any other
+            this.key = url != null ? url : type + '#' + eventCounter.incrementAndGet();
+            this.action = eventAction;
+        }
+
+        boolean isSynchronize() {
+            return PULL_REQUEST_EVENT.equals(type) && PullRequestManager.PullRequestAction.SYNCHRONIZE.equals(action);
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        String getPayload() {
+            return payload;
+        }
+
+        private XmlFile getXmlFile(File queueDir) {
+            return new XmlFile(Jenkins.XSTREAM, new File(queueDir, id + ".xml"));
+        }
+
+        // an event is not written again once it has been handled, so that it isn't handled again after a restart
+        synchronized void save(File queueDir) {
+            if (handled) {
+                return;
+            }
+            try {
+                getXmlFile(queueDir).write(this);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, MessageFormat.format("Error saving GitHub event {0}", type), ex);
+            }
+        }
+
+        synchronized void delete(File queueDir) {
+            handled = true;
+            File file = getXmlFile(queueDir).getFile();
+            if (file.exists() && !file.delete()) {
+                LOGGER.warning(MessageFormat.format("Cannot delete the file of GitHub event {0}: {1}", type, file));
+            }
+        }
+    }
+
+    /**
+     * Queues a GitHub event to be handled in the background.
+     *
+     * @param type the type of the event
+     * @param payload the payload of the event
+     * @return false if the event is not queued because there are too many events waiting
+     */
+    boolean submit(String type, String payload) {
+        Event event = new Event(type, payload);
+        Event queuedEvent = offer(event);
+        if (queuedEvent == null) {
+            return false;
+        }
+
+        // the file of the event is written outside the lock of the queue
+        queuedEvent.save(queueDir);
+        if (queuedEvent == event) {
+            dispatch();
+        }
+        return true;
+    }
+
+    /**
+     * Adds an event to the queue, or replaces the payload of the waiting synchronize event of the same pull request.
+     *
+     * @param event the event
+     * @return the event added to the queue, the waiting event whose payload has been replaced or null if the event is
+     *     not queued because there are too many events waiting
+     */
+    Event offer(Event event) {
+        synchronized (this) {
+            if (event.isSynchronize()) {
+                // the last event of the pull request, if it is still waiting, is superseded by this one
+                for (ListIterator<Event> iter = pendingEvents.listIterator(pendingEvents.size()); iter.hasPrevious();) {
+                    Event pendingEvent = iter.previous();
+                    if (pendingEvent.key.equals(event.key)) {
+                        if (pendingEvent.isSynchronize()) {
+                            pendingEvent.payload = event.payload;
+                            return pendingEvent;
+                        }
+                        break;
+                    }
+                }
+            }
+
+            if (pendingEvents.size() >= maxPendingEvents) {
+                return null;
+            }
+            pendingEvents.add(event);
+            return event;
+        }
+    }
+
+    private void dispatch() {
+        synchronized (this) {
+            for (Iterator<Event> iter = pendingEvents.iterator();
+                    iter.hasNext() && activeEvents.size() < MAX_WORKERS;) {
+                final Event event = iter.next();
+                if (!activeEvents.containsKey(event.key)) {
+                    iter.remove();
+                    activeEvents.put(event.key, event);
+                    executor.submit(new Runnable() {
+                        public void run() {
+                            handle(event);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    private void handle(Event event) {
+        try {
+            PullRequestManager.getInstance().handleEvent(event.type, event.payload);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.SEVERE, MessageFormat.format("Error handling GitHub event: {0}", event.type), ex);
+            LOGGER.severe(MessageFormat.format("Event payload: {0}", event.payload));
+        } finally {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(MessageFormat.format("GitHub event {0} handled {1} ms after it was received, {2} events "
+                        + "waiting", event.type, System.currentTimeMillis() - event.receivedAt, getQueueDepth()));
+            }
+
+            event.delete(queueDir);
+            synchronized (this) {
+                activeEvents.remove(event.key);
+            }
+            dispatch();
+        }
+    }
+
+    @Initializer(after = InitMilestone.COMPLETED)
+    public static void resume() {
+        getInstance().load();
+    }
+
+    /**
+     * Queues the events whose files are left in the directory of the queue, ahead of the events received since.
+     */
+    void load() {
+        File[] files = queueDir.listFiles();
+        if (files == null || files.length == 0) {
+            return;
+        }
+
+        List<Event> events = new ArrayList<Event>(files.length);
+        for (File file : files) {
+            try {
+                events.add((Event) new XmlFile(Jenkins.XSTREAM, file).read());
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, MessageFormat.format("Error loading GitHub event {0}, it is discarded",
+                        file), ex);
+                if (!file.delete()) {
+                    LOGGER.warning("Cannot delete " + file);
+                }
+            }
+        }
+        // the events are handled in the order they were received
+        Collections.sort(events, new Comparator<Event>() {
+            public int compare(Event event1, Event event2) {
+                return event1.receivedAt < event2.receivedAt ? -1 : (event1.receivedAt > event2.receivedAt ? 1 : 0);
+            }
+        });
+
+        if (!events.isEmpty()) {
+            LOGGER.info(MessageFormat.format("Resuming {0} GitHub events received before the restart", events.size()));
+            synchronized (this) {
+                pendingEvents.addAll(0, events);
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Gets the number of events waiting or being handled.
+     */
+    synchronized int getQueueDepth() {
+        return pendingEvents.size() + activeEvents.size();
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.util;
+
+import com.elasticbox.BoxStack;
+import com.elasticbox.Client;
+
+import hudson.XmlFile;
+
+import jenkins.model.Jenkins;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of box versions and their box stacks. Box versions cannot be modified once they are created, so they are
+ * kept in memory and in JENKINS_HOME/elasticbox-box-cache.xml across restarts. Draft boxes are never cached, the
+ * latest version of a box is always resolved against ElasticBox and only the pinned version it resolves to is
+ * served from the cache.
+ */
+public class BoxCache {
+
+    private static final Logger LOGGER = Logger.getLogger(BoxCache.class.getName());
+
+    private static final int MAX_ENTRIES = Integer.getInteger("elasticbox.jenkins.BoxCache.maxEntries", 1000);
+
+    private static final long WRITE_DELAY = Long.getLong("elasticbox.jenkins.BoxCache.writeDelay", 1000);
+
+    private static final String BOX = "box";
+    private static final String STACK = "stack";
+    private static final String RESOLVED_STACK = "resolved-stack";
+
+    // key is <endpoint URL>|<type>|<box version ID>, value is the JSON string of the cached box or stack
+    private static final Map<String, String> entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // writes triggered by a burst of deployments are coalesced into a single one
+    private static final CoalescingWriter writer = new CoalescingWriter(new Runnable() {
+        public void run() {
+            save();
+        }
+    }, WRITE_DELAY);
+
+    private static boolean loaded;
+
+    /**
+     * Gets the JSON of a box, served from the cache if the box is a version.
+     *
+     * @param client the client of the ElasticBox cloud
+     * @param boxId the ID of the box or box version
+     * @return a copy of the box JSON that the caller is free to modify
+     * @throws IOException if the box cannot be fetched
+     */
+    public static JSONObject getBox(Client client, String boxId) throws IOException {
+        String key = key(client, BOX, boxId);
+        String cached = get(key);
+        if (cached != null) {
+            return JSONObject.fromObject(cached);
+        }
+
+        JSONObject box = client.getBox(boxId);
+        if (isVersion(box)) {
+            put(key, box.toString());
+        }
+        return box;
+    }
+
+    /**
+     * Gets the stack of boxes of a box as returned by ElasticBox, served from the cache if all the boxes of the stack
+     * are versions.
+     *
+     * @param client the client of the ElasticBox cloud
+     * @param boxId the ID of the box or box version
+     * @return a copy of the stack that the caller is free to modify
+     * @throws IOException if the stack cannot be fetched
+     */
+    public static JSONArray getBoxStack(Client client, String boxId) throws IOException {
+        String key = key(client, STACK, boxId);
+        String cached = get(key);
+        if (cached != null) {
+            return JSONArray.fromObject(cached);
+        }
+
+        JSONArray stack = client.getBoxStack(boxId);
+        if (isImmutable(stack)) {
+            put(key, stack.toString());
+        }
+        return stack;
+    }
+
+    /**
+     * Gets the box stack of a box built by {@link BoxStack}, served from the cache if all the boxes of the stack are
+     * versions.
+     *
+     * @param client the client of the ElasticBox cloud
+     * @param boxId the ID of the box or box version
+     * @return a copy of the resolved box stack that the caller is free to modify
+     * @throws IOException if the stack cannot be fetched
+     */
+    public static JSONArray getResolvedBoxStack(Client client, String boxId) throws IOException {
+        String key = key(client, RESOLVED_STACK, boxId);
+        String cached = get(key);
+        if (cached != null) {
+            return JSONArray.fromObject(cached);
+        }
+
+        JSONArray stack = getBoxStack(client, boxId);
+        JSONArray resolvedStack = new BoxStack(boxId, stack, client).toJsonArray();
+        if (isImmutable(stack)) {
+            put(key, resolvedStack.toString());
+        }
+        return resolvedStack;
+    }
+
+    static boolean isVersion(JSONObject box) {
+        return box != null && box.containsKey("version") && !box.getJSONObject("version").isNullObject();
+    }
+
+    static boolean isImmutable(JSONArray stack) {
+        if (stack.isEmpty()) {
+            return false;
+        }
+        for (Object box : stack) {
+            if (!(box instanceof JSONObject) || !isVersion((JSONObject) box)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String key(Client client, String type, String boxId) {
+        return client.getEndpointUrl() + '|' + type + '|' + boxId;
+    }
+
+    private static String get(String key) {
+        synchronized (entries) {
+            load();
+            return entries.get(key);
+        }
+    }
+
+    private static void put(String key, String json) {
+        synchronized (entries) {
+            load();
+            entries.put(key, json);
+        }
+        writer.schedule();
+    }
+
+    /**
+     * @return the file of the cache or null if Jenkins is not running, the cache is kept in memory only then
+     */
+    private static XmlFile getXmlFile() {
+        Jenkins jenkins = Jenkins.getInstance();
+        return jenkins != null
+                ? new XmlFile(Jenkins.XSTREAM, new File(jenkins.getRootDir(), "elasticbox-box-cache.xml")) : null;
+    }
+
+    private static void load() {
+        if (loaded) {
+            return;
+        }
+
+        loaded = true;
+        XmlFile xmlFile = getXmlFile();
+        if (xmlFile != null && xmlFile.exists()) {
+            try {
+                entries.putAll((Map<String, String>) xmlFile.read());
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Loaded " + entries.size() + " cached box versions and stacks");
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Error loading the cache of box versions, it will be rebuilt", ex);
+            }
+        }
+    }
+
+    private static void save() {
+        XmlFile xmlFile = getXmlFile();
+        if (xmlFile == null) {
+            return;
+        }
+
+        Map<String, String> snapshot;
+        synchronized (entries) {
+            snapshot = new HashMap<String, String>(entries);
+        }
+        try {
+            xmlFile.write(snapshot);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Error saving the cache of box versions", ex);
+        }
+    }
+
+}
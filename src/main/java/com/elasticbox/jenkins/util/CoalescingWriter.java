@@ -0,0 +1,77 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.util;
+
+import hudson.init.Terminator;
+
+import jenkins.util.Timer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes data in the background, coalescing the writes requested within a short delay into a single one. The writes
+ * still pending are done when Jenkins shuts down. The write task is never run concurrently with itself, and a write
+ * requested while the task is running is done by a later run.
+ */
+public final class CoalescingWriter {
+
+    private static final List<CoalescingWriter> writers = new CopyOnWriteArrayList<CoalescingWriter>();
+
+    private final Runnable writeTask;
+    private final long delay;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * @param writeTask writes the data, it must handle its own errors
+     * @param delay the time in milliseconds to wait for more changes before writing
+     */
+    public CoalescingWriter(Runnable writeTask, long delay) {
+        this.writeTask = writeTask;
+        this.delay = delay;
+        writers.add(this);
+    }
+
+    /**
+     * Requests a write, which is done after the delay of this writer unless a write is already scheduled.
+     */
+    public void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(new Runnable() {
+                public void run() {
+                    flush();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes right away.
+     */
+    public synchronized void flush() {
+        scheduled.set(false);
+        writeTask.run();
+    }
+
+    @Terminator
+    public static void flushAll() {
+        for (CoalescingWriter writer : writers) {
+            if (writer.scheduled.get()) {
+                writer.flush();
+            }
+        }
+    }
+
+}
@@ -12,19 +12,26 @@
 
 package com.elasticbox.jenkins.util;
 
+import hudson.Extension;
 import hudson.XmlFile;
 import hudson.init.InitMilestone;
 import hudson.init.Initializer;
 import hudson.model.AbstractProject;
+import hudson.model.Item;
 import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
 
 import jenkins.model.Jenkins;
 
 import java.io.File;
 import java.io.IOException;
 
+import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -36,6 +43,18 @@ public class ProjectData implements Saveable {
     private static final ConcurrentHashMap<AbstractProject, ProjectData> projectDataLookup =
         new ConcurrentHashMap<AbstractProject, ProjectData>();
 
+    private static final long WRITE_DELAY = Long.getLong(ProjectData.class.getName() + ".writeDelay", 2000);
+
+    // project data changed since it was last written
+    private static final Set<ProjectData> dirtyProjectData =
+        Collections.newSetFromMap(new ConcurrentHashMap<ProjectData, Boolean>());
+
+    private static final CoalescingWriter writer = new CoalescingWriter(new Runnable() {
+        public void run() {
+            writeDirty();
+        }
+    }, WRITE_DELAY);
+
     public abstract static class Datum {
         protected abstract void setProjectData(ProjectData projectData);
     }
@@ -53,10 +72,36 @@ public class ProjectData implements Saveable {
         return project;
     }
 
-    public synchronized void save() throws IOException {
+    /**
+     * Schedules this project data to be written. The changes made within a short period of time are written at once
+     * in the background, replacing the file atomically.
+     */
+    public void save() {
+        dirtyProjectData.add(this);
+        writer.schedule();
+    }
+
+    private synchronized void write() throws IOException {
         getXmlFile(project).write(this);
     }
 
+    private static void writeDirty() {
+        for (Iterator<ProjectData> iter = dirtyProjectData.iterator(); iter.hasNext();) {
+            ProjectData projectData = iter.next();
+            iter.remove();
+            if (!projectData.project.getRootDir().isDirectory()) {
+                // the project has been deleted since the data was changed, don't create its directory again
+                continue;
+            }
+            try {
+                projectData.write();
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, MessageFormat.format("Error saving ElasticBox data of project {0}",
+                        projectData.project.getFullName()), ex);
+            }
+        }
+    }
+
     public <T extends Datum> T get(Class<T> type) {
         for (Datum datum : data) {
             if (type.isInstance(datum)) {
@@ -108,7 +153,7 @@ public class ProjectData implements Saveable {
             projectData = projectDataLookup.get(project);
             if (projectData == newProjectData) {
                 try {
-                    projectData.save();
+                    projectData.write();
                 } catch (IOException ex) {
                     projectDataLookup.remove(project);
                     projectData = null;
@@ -120,7 +165,41 @@ public class ProjectData implements Saveable {
     }
 
     public static ProjectData removeInstance(AbstractProject project) {
-        return projectDataLookup.remove(project);
+        ProjectData projectData = projectDataLookup.remove(project);
+        if (projectData != null) {
+            dirtyProjectData.remove(projectData);
+        }
+        return projectData;
+    }
+
+    /**
+     * Keeps the pending writes of the project data in line with the projects: the data of a deleted project is never
+     * written, and the data of a renamed project is written to its new location.
+     */
+    @Extension
+    public static final class ProjectListener extends ItemListener {
+
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof AbstractProject) {
+                ProjectData projectData = projectDataLookup.get(item);
+                if (projectData != null) {
+                    dirtyProjectData.remove(projectData);
+                }
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            if (item instanceof AbstractProject) {
+                ProjectData projectData = projectDataLookup.get(item);
+                if (projectData != null && dirtyProjectData.remove(projectData)) {
+                    // written again once the project has been moved
+                    projectData.save();
+                }
+            }
+        }
+
     }
 
     @Initializer(after = InitMilestone.JOB_LOADED)
@@ -12,7 +12,6 @@
 
 package com.elasticbox.jenkins.util;
 
-import com.elasticbox.BoxStack;
 import com.elasticbox.Client;
 import com.elasticbox.jenkins.AbstractSlaveConfiguration;
 import com.elasticbox.jenkins.ElasticBoxSlave;
@@ -69,13 +68,21 @@ public class SlaveInstance {
     }
 
     public static JSONArray createJenkinsVariables(Client client, ElasticBoxSlave slave) throws IOException {
+        return createJenkinsVariables(getJenkinsVariablesScope(client, slave.getBoxVersion()), slave);
+    }
+
+    /**
+     * Finds the scope of the required variables of a slave box in the runtime stack of a box version.
+     *
+     * @param client the client of the ElasticBox cloud
+     * @param boxVersion the box version to deploy
+     * @return the scope of the required variables, null if they are defined by the box version itself
+     * @throws IOException if the box stack cannot be fetched or no box of it has the required variables
+     */
+    public static String getJenkinsVariablesScope(Client client, String boxVersion) throws IOException {
         Map<String, JSONObject> requiredVariables = Collections.EMPTY_MAP;
 
-        JSONArray boxStack = new BoxStack(
-                            slave.getBoxVersion(),
-                            client.getBoxStack(slave.getBoxVersion()),
-                            client
-        ).toJsonArray();
+        JSONArray boxStack = BoxCache.getResolvedBoxStack(client, boxVersion);
 
         for (int i = 0; i < boxStack.size(); i++) {
             requiredVariables = getRequiredVariables(boxStack.getJSONObject(i));
@@ -88,20 +95,29 @@ public class SlaveInstance {
             throw new IOException(
                 MessageFormat.format(
                     "No box in the runtime stack of the box version {0} has the required variables {1}.",
-                    slave.getBoxVersion(),
+                    boxVersion,
                     StringUtils.join(REQUIRED_VARIABLES, ", ")));
         }
 
         JSONObject jenkinsUrlVariable = requiredVariables.get(JENKINS_URL_VARIABLE);
-        String jenkinsUrl = Jenkins.getInstance().getRootUrl();
+        return jenkinsUrlVariable.containsKey("scope") ? jenkinsUrlVariable.getString("scope") : null;
+    }
 
+    /**
+     * Creates the required variables of a slave, the JNLP secret of the slave is filled in here.
+     *
+     * @param scope the scope of the required variables as returned by {@link #getJenkinsVariablesScope}
+     * @param slave the slave to deploy
+     * @return the required variables
+     */
+    public static JSONArray createJenkinsVariables(String scope, ElasticBoxSlave slave) {
+        String jenkinsUrl = Jenkins.getInstance().getRootUrl();
 
         JSONObject variable = new JSONObject();
         variable.put("name", JENKINS_URL_VARIABLE);
         variable.put("type", "Text");
         variable.put("value", jenkinsUrl);
 
-        String scope = jenkinsUrlVariable.containsKey("scope") ? jenkinsUrlVariable.getString("scope") : null;
         if (scope != null) {
             variable.put("scope", scope);
         }
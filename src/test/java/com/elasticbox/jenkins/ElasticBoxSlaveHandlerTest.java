@@ -0,0 +1,54 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class ElasticBoxSlaveHandlerTest {
+
+    private static final List<String> TEMPLATE_KEY =
+            ElasticBoxSlaveHandler.getTemplateKey("cloud", "config", "version", "policy");
+
+    @Test
+    public void testSlavesWithSameDeploymentShareTemplate() {
+        assertEquals(TEMPLATE_KEY, ElasticBoxSlaveHandler.getTemplateKey("cloud", "config", "version", "policy"));
+        assertEquals(TEMPLATE_KEY.hashCode(),
+                ElasticBoxSlaveHandler.getTemplateKey("cloud", "config", "version", "policy").hashCode());
+    }
+
+    @Test
+    public void testSlavesWithDifferentDeploymentGetDifferentTemplates() {
+        assertNotEquals("Different cloud", TEMPLATE_KEY,
+                ElasticBoxSlaveHandler.getTemplateKey("other-cloud", "config", "version", "policy"));
+        assertNotEquals("Different slave configuration", TEMPLATE_KEY,
+                ElasticBoxSlaveHandler.getTemplateKey("cloud", "other-config", "version", "policy"));
+        assertNotEquals("Different box version", TEMPLATE_KEY,
+                ElasticBoxSlaveHandler.getTemplateKey("cloud", "config", "other-version", "policy"));
+        assertNotEquals("Different deployment policy", TEMPLATE_KEY,
+                ElasticBoxSlaveHandler.getTemplateKey("cloud", "config", "version", "other-policy"));
+    }
+
+    @Test
+    public void testTemplateKeyFieldsDoNotRunTogether() {
+        assertNotEquals(ElasticBoxSlaveHandler.getTemplateKey("cloud|config", "version", "policy", null),
+                ElasticBoxSlaveHandler.getTemplateKey("cloud", "config|version", "policy", null));
+        assertNotEquals(ElasticBoxSlaveHandler.getTemplateKey("cloud", "config", null, "policy"),
+                ElasticBoxSlaveHandler.getTemplateKey("cloud", "config", "policy", null));
+    }
+
+}
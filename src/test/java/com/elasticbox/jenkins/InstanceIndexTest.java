@@ -0,0 +1,121 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.UUID;
+
+public class InstanceIndexTest {
+
+    private final ElasticBoxCloud cloud = Mockito.mock(ElasticBoxCloud.class);
+
+    private final String workspaceId = UUID.randomUUID().toString();
+
+    private static JSONObject createInstance(String... tags) {
+        JSONObject instance = new JSONObject();
+        instance.put("id", UUID.randomUUID().toString());
+        instance.put("tags", JSONArray.fromObject(tags));
+        return instance;
+    }
+
+    private static JSONArray createInstances(JSONObject... instances) {
+        JSONArray instanceArray = new JSONArray();
+        for (JSONObject instance : instances) {
+            instanceArray.add(instance);
+        }
+        return instanceArray;
+    }
+
+    @Test
+    public void testNewInstancesAreIndexedByFirstTag() {
+        String slaveName = "slave-" + UUID.randomUUID();
+        JSONObject slaveInstance = createInstance(slaveName, "other-tag");
+        JSONObject untaggedInstance = createInstance();
+
+        InstanceIndex.update(cloud, workspaceId, createInstances(slaveInstance, untaggedInstance));
+
+        assertEquals(slaveInstance.getString("id"), InstanceIndex.getInstanceId(slaveName));
+        assertEquals(slaveName, InstanceIndex.getSlaveName(slaveInstance.getString("id")));
+        assertNull(InstanceIndex.getSlaveName(untaggedInstance.getString("id")));
+    }
+
+    @Test
+    public void testInstancesMissingFromListingAreRemoved() {
+        String slaveName = "slave-" + UUID.randomUUID();
+        String otherSlaveName = "slave-" + UUID.randomUUID();
+        JSONObject slaveInstance = createInstance(slaveName);
+        JSONObject otherSlaveInstance = createInstance(otherSlaveName);
+
+        InstanceIndex.update(cloud, workspaceId, createInstances(slaveInstance, otherSlaveInstance));
+        InstanceIndex.update(cloud, workspaceId, createInstances(otherSlaveInstance));
+
+        assertNull(InstanceIndex.getInstanceId(slaveName));
+        assertNull(InstanceIndex.getSlaveName(slaveInstance.getString("id")));
+        assertEquals(otherSlaveInstance.getString("id"), InstanceIndex.getInstanceId(otherSlaveName));
+    }
+
+    @Test
+    public void testListingOfOtherWorkspaceDoesNotRemoveInstances() {
+        String slaveName = "slave-" + UUID.randomUUID();
+        JSONObject slaveInstance = createInstance(slaveName);
+
+        InstanceIndex.update(cloud, workspaceId, createInstances(slaveInstance));
+        InstanceIndex.update(cloud, UUID.randomUUID().toString(), new JSONArray());
+
+        assertEquals(slaveInstance.getString("id"), InstanceIndex.getInstanceId(slaveName));
+    }
+
+    @Test
+    public void testSlaveNameMovesToNewInstance() {
+        String slaveName = "slave-" + UUID.randomUUID();
+        JSONObject oldInstance = createInstance(slaveName);
+        JSONObject newInstance = createInstance(slaveName);
+
+        InstanceIndex.update(cloud, workspaceId, createInstances(oldInstance));
+        InstanceIndex.update(cloud, workspaceId, createInstances(newInstance));
+
+        assertEquals(newInstance.getString("id"), InstanceIndex.getInstanceId(slaveName));
+        assertNull(InstanceIndex.getSlaveName(oldInstance.getString("id")));
+    }
+
+    @Test
+    public void testChangedFirstTagOfKnownInstanceIsReindexed() {
+        String slaveName = "slave-" + UUID.randomUUID();
+        String newSlaveName = "slave-" + UUID.randomUUID();
+        JSONObject instance = createInstance(slaveName);
+        String instanceId = instance.getString("id");
+
+        InstanceIndex.update(cloud, workspaceId, createInstances(instance));
+        instance.put("tags", JSONArray.fromObject(new String[] {newSlaveName}));
+        InstanceIndex.update(cloud, workspaceId, createInstances(instance));
+
+        assertEquals(newSlaveName, InstanceIndex.getSlaveName(instanceId));
+        assertEquals(instanceId, InstanceIndex.getInstanceId(newSlaveName));
+        assertNull(InstanceIndex.getInstanceId(slaveName));
+
+        instance.put("tags", new JSONArray());
+        InstanceIndex.update(cloud, workspaceId, createInstances(instance));
+
+        assertNull(InstanceIndex.getSlaveName(instanceId));
+        assertNull(InstanceIndex.getInstanceId(newSlaveName));
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+public class LifecycleJournalTest {
+
+    private static final String INSTANCE_URL = "https://elasticbox.com/services/instances/i-1";
+
+    private static LifecycleJournal.State read(String journal) throws IOException {
+        LifecycleJournal.State state = new LifecycleJournal.State();
+        state.read(new BufferedReader(new StringReader(journal)));
+        return state;
+    }
+
+    private static String line(LifecycleJournal.Event event, String nodeName, String instanceUrl) {
+        return "1449000000000\t" + event + '\t' + nodeName + '\t' + (instanceUrl != null ? instanceUrl : "-") + '\n';
+    }
+
+    @Test
+    public void testLastEventOfSlaveIsKept() {
+        LifecycleJournal.State state = new LifecycleJournal.State();
+        state.apply(LifecycleJournal.Event.DEPLOY, "slave-1", null);
+        state.apply(LifecycleJournal.Event.SUBMIT, "slave-1", INSTANCE_URL);
+
+        LifecycleJournal.Entry entry = state.getInProgress().get("slave-1");
+        assertEquals(LifecycleJournal.Event.SUBMIT, entry.getEvent());
+        assertEquals(INSTANCE_URL, entry.getInstanceUrl());
+        assertEquals(2, state.getLines());
+    }
+
+    @Test
+    public void testFinishedOperationsAreRemoved() {
+        LifecycleJournal.State state = new LifecycleJournal.State();
+        for (String nodeName : Arrays.asList("online", "failed", "deleted", "terminating")) {
+            state.apply(LifecycleJournal.Event.DEPLOY, nodeName, null);
+            state.apply(LifecycleJournal.Event.SUBMIT, nodeName, INSTANCE_URL);
+        }
+        state.apply(LifecycleJournal.Event.ONLINE, "online", INSTANCE_URL);
+        state.apply(LifecycleJournal.Event.FAILED, "failed", INSTANCE_URL);
+        state.apply(LifecycleJournal.Event.DELETE, "deleted", INSTANCE_URL);
+        state.apply(LifecycleJournal.Event.TERMINATE, "terminating", INSTANCE_URL);
+
+        assertEquals(Arrays.asList("terminating"), new ArrayList<String>(state.getInProgress().keySet()));
+        assertEquals(LifecycleJournal.Event.TERMINATE, state.getInProgress().get("terminating").getEvent());
+    }
+
+    @Test
+    public void testTornAndInvalidLinesAreIgnored() throws IOException {
+        LifecycleJournal.State state = read(
+                line(LifecycleJournal.Event.DEPLOY, "slave-1", null)
+                + "1449000000000\tUNKNOWN\tslave-2\t-\n"
+                + line(LifecycleJournal.Event.DEPLOY, "slave-3", null)
+                + "1449000000000\tSUBMIT\tslave-3");
+
+        Map<String, LifecycleJournal.Entry> inProgress = state.getInProgress();
+        assertEquals(2, inProgress.size());
+        assertEquals(LifecycleJournal.Event.DEPLOY, inProgress.get("slave-1").getEvent());
+        assertNull(inProgress.get("slave-1").getInstanceUrl());
+        assertFalse(inProgress.containsKey("slave-2"));
+        assertEquals("The torn last line is not applied", LifecycleJournal.Event.DEPLOY,
+                inProgress.get("slave-3").getEvent());
+    }
+
+    @Test
+    public void testCompactionKeepsOneLinePerSlaveInProgress() throws IOException {
+        LifecycleJournal.State state = new LifecycleJournal.State();
+        for (int i = 0; i < 10; i++) {
+            state.apply(LifecycleJournal.Event.DEPLOY, "slave-" + i, null);
+            state.apply(LifecycleJournal.Event.SUBMIT, "slave-" + i, INSTANCE_URL + i);
+            if (i % 2 == 0) {
+                state.apply(LifecycleJournal.Event.ONLINE, "slave-" + i, INSTANCE_URL + i);
+            }
+        }
+        assertTrue(state.needsCompaction(20));
+        assertFalse(state.needsCompaction(30));
+
+        String compactedLines = state.compact();
+        assertEquals(5, state.getLines());
+        assertFalse(state.needsCompaction(0));
+
+        LifecycleJournal.State replayedState = read(compactedLines);
+        assertEquals(new ArrayList<String>(state.getInProgress().keySet()),
+                new ArrayList<String>(replayedState.getInProgress().keySet()));
+        for (Map.Entry<String, LifecycleJournal.Entry> entry : state.getInProgress().entrySet()) {
+            LifecycleJournal.Entry replayedEntry = replayedState.getInProgress().get(entry.getKey());
+            assertEquals(entry.getValue().getEvent(), replayedEntry.getEvent());
+            assertEquals(entry.getValue().getInstanceUrl(), replayedEntry.getInstanceUrl());
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RetentionCoordinatorTest {
+
+    @Test
+    public void testTerminationBudgetKeepsMinimumInstances() {
+        assertEquals(3, RetentionCoordinator.getTerminationBudget(10, 5, 2));
+        assertEquals(0, RetentionCoordinator.getTerminationBudget(10, 2, 2));
+        assertEquals(0, RetentionCoordinator.getTerminationBudget(10, 1, 2));
+    }
+
+    @Test
+    public void testTerminationBudgetIsBoundByActiveInstancesOfCloud() {
+        assertEquals(0, RetentionCoordinator.getTerminationBudget(2, 5, 2));
+        assertEquals(1, RetentionCoordinator.getTerminationBudget(3, 5, 2));
+    }
+
+    @Test
+    public void testAcquireTakesOneSlaveAtATime() {
+        AtomicInteger terminationBudget = new AtomicInteger(2);
+
+        assertTrue(RetentionCoordinator.acquire(terminationBudget));
+        assertTrue(RetentionCoordinator.acquire(terminationBudget));
+        assertFalse("The budget of the slave configuration is exhausted",
+                RetentionCoordinator.acquire(terminationBudget));
+        assertEquals(0, terminationBudget.get());
+    }
+
+    @Test
+    public void testConcurrentAcquireNeverExceedsBudget() throws InterruptedException {
+        final AtomicInteger terminationBudget = new AtomicInteger(5);
+        final AtomicInteger terminated = new AtomicInteger();
+        Thread[] threads = new Thread[20];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    if (RetentionCoordinator.acquire(terminationBudget)) {
+                        terminated.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(5, terminated.get());
+        assertEquals(0, terminationBudget.get());
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TerminationPipelineTest {
+
+    private TerminationPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        pipeline = new TerminationPipeline("test-cloud");
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    private static ElasticBoxSlave createSlave(String nodeName) {
+        ElasticBoxSlave slave = mock(ElasticBoxSlave.class);
+        when(slave.getNodeName()).thenReturn(nodeName);
+        return slave;
+    }
+
+    @Test
+    public void testKeyDoesNotChangeWhenInstanceUrlIsSet() {
+        ElasticBoxSlave slave = createSlave("slave-1");
+        String key = TerminationPipeline.getKey(slave);
+
+        when(slave.getInstanceUrl()).thenReturn("https://elasticbox.test/services/instances/i-abc123");
+        when(slave.getInstanceId()).thenReturn("i-abc123");
+
+        assertEquals(key, TerminationPipeline.getKey(slave));
+    }
+
+    @Test
+    public void testSlaveSubmittedMidDeployIsHandledOnce() {
+        ElasticBoxSlave slave = createSlave("slave-1");
+        assertTrue(pipeline.add(slave));
+
+        when(slave.getInstanceUrl()).thenReturn("https://elasticbox.test/services/instances/i-abc123");
+        when(slave.getInstanceId()).thenReturn("i-abc123");
+
+        assertFalse("The slave is already being handled", pipeline.add(slave));
+        assertEquals(1, pipeline.size());
+    }
+
+    @Test
+    public void testDifferentSlavesAreHandledSeparately() {
+        assertTrue(pipeline.add(createSlave("slave-1")));
+        assertTrue(pipeline.add(createSlave("slave-2")));
+        assertEquals(2, pipeline.size());
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.migration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VersionTest {
+
+    @Test
+    public void testCompareEqualVersions() {
+        assertEquals(0, new Version(4, 0, 3).compareTo(Version._4_0_3));
+    }
+
+    @Test
+    public void testCompareMicroVersions() {
+        assertTrue(new Version(4, 0, 2).compareTo(Version._4_0_3) < 0);
+        assertTrue(new Version(4, 0, 4).compareTo(Version._4_0_3) > 0);
+        // the micro version is compared with the micro version, not with the minor one
+        assertTrue(new Version(4, 3, 0).compareTo(new Version(4, 3, 1)) < 0);
+    }
+
+    @Test
+    public void testMajorAndMinorVersionsTakePrecedence() {
+        assertTrue(new Version(3, 9, 9).compareTo(Version._4_0_3) < 0);
+        assertTrue(new Version(4, 1, 0).compareTo(Version._4_0_3) > 0);
+        assertTrue(Version._0_9_3.compareTo(Version._4_0_3) < 0);
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.triggers.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.kohsuke.github.GHOrganization;
+import org.kohsuke.github.GHUser;
+import org.kohsuke.github.GitHub;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class GitHubConnectionsTest {
+
+    private static GHUser createUser(String login) {
+        GHUser user = mock(GHUser.class);
+        when(user.getLogin()).thenReturn(login);
+        return user;
+    }
+
+    @Test
+    public void testCachedValueExpires() {
+        assertTrue(new GitHubConnections.CachedValue<Boolean>(true, 0).isExpired());
+        assertFalse(new GitHubConnections.CachedValue<Boolean>(true, TimeUnit.HOURS.toMillis(1)).isExpired());
+    }
+
+    @Test
+    public void testMembershipIsLookedUpOnce() throws IOException {
+        GitHub gitHub = mock(GitHub.class);
+        GHOrganization organization = mock(GHOrganization.class);
+        GHUser member = createUser("member");
+        GHUser outsider = createUser("outsider");
+        when(gitHub.getOrganization("elasticbox")).thenReturn(organization);
+        when(organization.hasMember(member)).thenReturn(true);
+        when(organization.hasMember(outsider)).thenReturn(false);
+
+        assertTrue(GitHubConnections.isMember(gitHub, "elasticbox", member));
+        assertTrue(GitHubConnections.isMember(gitHub, "elasticbox", member));
+        assertFalse(GitHubConnections.isMember(gitHub, "elasticbox", outsider));
+        assertFalse(GitHubConnections.isMember(gitHub, "elasticbox", outsider));
+
+        verify(organization, times(1)).hasMember(member);
+        verify(organization, times(1)).hasMember(outsider);
+    }
+
+    @Test
+    public void testMembershipsAreCachedPerConnection() throws IOException {
+        GitHub gitHub = mock(GitHub.class);
+        GitHub otherGitHub = mock(GitHub.class);
+        GHOrganization organization = mock(GHOrganization.class);
+        GHUser user = createUser("user");
+        when(gitHub.getOrganization("elasticbox")).thenReturn(organization);
+        when(otherGitHub.getOrganization("elasticbox")).thenReturn(organization);
+        when(organization.hasMember(user)).thenReturn(true);
+
+        assertTrue(GitHubConnections.isMember(gitHub, "elasticbox", user));
+        assertTrue(GitHubConnections.isMember(otherGitHub, "elasticbox", user));
+
+        verify(organization, times(2)).hasMember(user);
+    }
+
+    @Test
+    public void testOrganizationsAreFetchedOnce() throws IOException {
+        GitHub gitHub = mock(GitHub.class);
+        when(gitHub.getMyOrganizations()).thenReturn(
+                Collections.singletonMap("elasticbox", mock(GHOrganization.class)));
+
+        assertEquals(Collections.singleton("elasticbox"), GitHubConnections.getMyOrganizations(gitHub));
+        assertEquals(Collections.singleton("elasticbox"), GitHubConnections.getMyOrganizations(gitHub));
+
+        verify(gitHub, times(1)).getMyOrganizations();
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.triggers.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.ParametersAction;
+import hudson.model.StringParameterValue;
+
+import org.junit.Test;
+import org.kohsuke.github.GHCommitPointer;
+import org.kohsuke.github.GHPullRequest;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class PullRequestBuildIndexTest {
+
+    private static final String PULL_REQUEST_URL = "https://github.com/elasticbox/jenkins/pull/";
+
+    private static AbstractBuild createBuild(AbstractProject project, String pullRequestUrl) {
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getParent()).thenReturn(project);
+        when(build.isBuilding()).thenReturn(true);
+        if (pullRequestUrl != null) {
+            when(build.getAction(ParametersAction.class)).thenReturn(
+                    new ParametersAction(new StringParameterValue(PullRequestBuildHandler.PR_URL, pullRequestUrl)));
+        }
+        return build;
+    }
+
+    @Test
+    public void testStartedBuildIsRunningUntilCompleted() {
+        String pullRequestUrl = PULL_REQUEST_URL + 1;
+        AbstractProject project = mock(AbstractProject.class);
+        AbstractBuild build = createBuild(project, pullRequestUrl);
+
+        PullRequestBuildIndex.onStarted(build);
+        assertEquals(pullRequestUrl, PullRequestBuildIndex.getPullRequestUrl(build));
+        assertEquals(Collections.singletonList(build), PullRequestBuildIndex.getRunningBuilds(project, pullRequestUrl));
+        assertTrue("The builds of other projects are not listed",
+                PullRequestBuildIndex.getRunningBuilds(mock(AbstractProject.class), pullRequestUrl).isEmpty());
+
+        PullRequestBuildIndex.onCompleted(build);
+        assertTrue(PullRequestBuildIndex.getRunningBuilds(project, pullRequestUrl).isEmpty());
+    }
+
+    @Test
+    public void testBuildsCompletedOutOfOrder() {
+        String pullRequestUrl = PULL_REQUEST_URL + 2;
+        AbstractProject project = mock(AbstractProject.class);
+        AbstractBuild first = createBuild(project, pullRequestUrl);
+        AbstractBuild second = createBuild(project, pullRequestUrl);
+
+        PullRequestBuildIndex.onStarted(first);
+        PullRequestBuildIndex.onStarted(second);
+        assertEquals(new HashSet<Object>(Arrays.asList(first, second)),
+                new HashSet<Object>(PullRequestBuildIndex.getRunningBuilds(project, pullRequestUrl)));
+
+        PullRequestBuildIndex.onCompleted(second);
+        assertEquals(Collections.singletonList(first), PullRequestBuildIndex.getRunningBuilds(project, pullRequestUrl));
+
+        PullRequestBuildIndex.onCompleted(first);
+        assertTrue(PullRequestBuildIndex.getRunningBuilds(project, pullRequestUrl).isEmpty());
+    }
+
+    @Test
+    public void testBuildsOfOtherJobsAreNotIndexed() {
+        AbstractProject project = mock(AbstractProject.class);
+        AbstractBuild build = createBuild(project, null);
+
+        assertNull(PullRequestBuildIndex.getPullRequestUrl(build));
+        PullRequestBuildIndex.onStarted(build);
+        PullRequestBuildIndex.onCompleted(build);
+    }
+
+    @Test
+    public void testLastBuildNumberIsNotMovedBackByEarlierBuild() throws IOException {
+        GHPullRequest pullRequest = mock(GHPullRequest.class);
+        GHCommitPointer head = mock(GHCommitPointer.class);
+        when(pullRequest.getHtmlUrl()).thenReturn(new URL(PULL_REQUEST_URL + 3));
+        when(pullRequest.getHead()).thenReturn(head);
+        PullRequestData pullRequestData = new PullRequestData(pullRequest, null);
+
+        assertTrue(pullRequestData.setLastBuildNumber(2));
+        assertFalse("The build that completes after a later one is not the last build",
+                pullRequestData.setLastBuildNumber(1));
+        assertEquals(Integer.valueOf(2), pullRequestData.getLastBuildNumber());
+        assertTrue(pullRequestData.setLastBuildNumber(3));
+        assertEquals(Integer.valueOf(3), pullRequestData.getLastBuildNumber());
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.triggers.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class PullRequestCleanupTest {
+
+    private static final String REPOSITORY_URL = "https://github.com/elasticbox/jenkins";
+    private static final String OTHER_REPOSITORY_URL = "https://github.com/elasticbox/other";
+
+    private static Set<String> urls(String... urls) {
+        return new HashSet<String>(Arrays.asList(urls));
+    }
+
+    @Test
+    public void testFewPullRequestsAreFetchedEach() {
+        assertTrue(PullRequestCleanup.isFetchingEachPullRequest(1, 1));
+        assertTrue(PullRequestCleanup.isFetchingEachPullRequest(1, 30));
+        assertTrue(PullRequestCleanup.isFetchingEachPullRequest(2, 31));
+        assertTrue(PullRequestCleanup.isFetchingEachPullRequest(4, 100));
+    }
+
+    @Test
+    public void testManyPullRequestsAreCheckedByListingTheOpenOnes() {
+        assertFalse(PullRequestCleanup.isFetchingEachPullRequest(1, 0));
+        assertFalse(PullRequestCleanup.isFetchingEachPullRequest(2, 30));
+        assertFalse(PullRequestCleanup.isFetchingEachPullRequest(5, 100));
+    }
+
+    @Test
+    public void testPullRequestsNotListedAsOpenAreClosed() {
+        Set<String> pullRequestUrls = urls(REPOSITORY_URL + "/pull/1", REPOSITORY_URL + "/pull/2");
+
+        assertEquals(urls(REPOSITORY_URL + "/pull/2"), PullRequestCleanup.getClosedPullRequestUrls(pullRequestUrls,
+                urls(REPOSITORY_URL + "/pull/1", REPOSITORY_URL + "/pull/3")));
+        assertEquals(pullRequestUrls, PullRequestCleanup.getClosedPullRequestUrls(pullRequestUrls,
+                Collections.<String>emptySet()));
+        assertEquals("The pull requests to check are not changed", 2, pullRequestUrls.size());
+    }
+
+    @Test
+    public void testPullRequestsClosedViaWebHookAreSkipped() {
+        Map<String, Set<String>> pullRequestUrlsLookup = new HashMap<String, Set<String>>();
+        pullRequestUrlsLookup.put(REPOSITORY_URL, urls(REPOSITORY_URL + "/pull/1", REPOSITORY_URL + "/pull/2"));
+        pullRequestUrlsLookup.put(OTHER_REPOSITORY_URL, urls(OTHER_REPOSITORY_URL + "/pull/1"));
+
+        PullRequestCleanup.skipClosedPullRequests(pullRequestUrlsLookup,
+                urls(REPOSITORY_URL + "/pull/1", OTHER_REPOSITORY_URL + "/pull/1"));
+
+        assertEquals("The other pull requests of the repository are still checked",
+                Collections.singletonMap(REPOSITORY_URL, urls(REPOSITORY_URL + "/pull/2")), pullRequestUrlsLookup);
+    }
+
+    @Test
+    public void testCloseEventsAreSkippedByOneCleanup() {
+        PullRequestCleanup.pollCloseEventPullRequestUrls();
+        PullRequestCleanup.closeEventReceived(REPOSITORY_URL + "/pull/1");
+        PullRequestCleanup.closeEventReceived(REPOSITORY_URL + "/pull/2");
+
+        assertEquals(urls(REPOSITORY_URL + "/pull/1", REPOSITORY_URL + "/pull/2"),
+                PullRequestCleanup.pollCloseEventPullRequestUrls());
+        assertTrue("The close events are taken by the last cleanup",
+                PullRequestCleanup.pollCloseEventPullRequestUrls().isEmpty());
+    }
+
+}
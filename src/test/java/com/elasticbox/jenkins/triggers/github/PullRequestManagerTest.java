@@ -0,0 +1,42 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.triggers.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class PullRequestManagerTest {
+
+    private static final String REPOSITORY_URL = "https://github.com/elasticbox/jenkins-plugin";
+
+    @Test
+    public void testNormalizeRepositoryUrlIgnoresSuffixesAndCase() {
+        assertEquals(REPOSITORY_URL, PullRequestManager.normalizeRepositoryUrl(REPOSITORY_URL));
+        assertEquals(REPOSITORY_URL, PullRequestManager.normalizeRepositoryUrl(REPOSITORY_URL + '/'));
+        assertEquals(REPOSITORY_URL, PullRequestManager.normalizeRepositoryUrl(REPOSITORY_URL + ".git"));
+        assertEquals(REPOSITORY_URL, PullRequestManager.normalizeRepositoryUrl(REPOSITORY_URL + ".git/"));
+        assertEquals(REPOSITORY_URL,
+                PullRequestManager.normalizeRepositoryUrl(" https://GitHub.com/ElasticBox/Jenkins-Plugin "));
+    }
+
+    @Test
+    public void testNormalizeRepositoryUrlKeepsRepositoriesApart() {
+        assertNotEquals(PullRequestManager.normalizeRepositoryUrl(REPOSITORY_URL),
+                PullRequestManager.normalizeRepositoryUrl(REPOSITORY_URL + "-fork"));
+        assertNotEquals(PullRequestManager.normalizeRepositoryUrl(REPOSITORY_URL),
+                PullRequestManager.normalizeRepositoryUrl("https://github.com/other/jenkins-plugin"));
+    }
+
+}
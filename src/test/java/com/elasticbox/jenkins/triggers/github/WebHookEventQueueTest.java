@@ -0,0 +1,104 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.triggers.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+public class WebHookEventQueueTest {
+
+    private static final String PULL_REQUEST_URL = "https://github.com/elasticbox/jenkins/pull/1";
+    private static final String OTHER_PULL_REQUEST_URL = "https://github.com/elasticbox/jenkins/pull/2";
+
+    private static final int MAX_PENDING_EVENTS = 10;
+
+    private WebHookEventQueue queue;
+
+    @Before
+    public void setUp() {
+        // the events are only offered to the queue, so its directory is never written
+        queue = new WebHookEventQueue(new File("webhook-queue"), MAX_PENDING_EVENTS);
+    }
+
+    private static WebHookEventQueue.Event createPullRequestEvent(String action, String url, String sha) {
+        return new WebHookEventQueue.Event("pull_request", "{\"action\":\"" + action + "\",\"pull_request\":"
+                + "{\"html_url\":\"" + url + "\",\"head\":{\"sha\":\"" + sha + "\"}}}");
+    }
+
+    @Test
+    public void testWaitingSynchronizeEventIsReplaced() {
+        WebHookEventQueue.Event first = createPullRequestEvent("synchronize", PULL_REQUEST_URL, "a");
+        WebHookEventQueue.Event second = createPullRequestEvent("synchronize", PULL_REQUEST_URL, "b");
+
+        assertSame(first, queue.offer(first));
+        assertSame("The waiting event is reused", first, queue.offer(second));
+        assertEquals(second.getPayload(), first.getPayload());
+    }
+
+    @Test
+    public void testSynchronizeEventAfterOtherEventIsQueued() {
+        WebHookEventQueue.Event synchronize = createPullRequestEvent("synchronize", PULL_REQUEST_URL, "a");
+        WebHookEventQueue.Event closed = createPullRequestEvent("closed", PULL_REQUEST_URL, "a");
+        WebHookEventQueue.Event reopenedSynchronize = createPullRequestEvent("synchronize", PULL_REQUEST_URL, "b");
+
+        assertSame(synchronize, queue.offer(synchronize));
+        assertSame(closed, queue.offer(closed));
+        assertSame("The events of a pull request keep their order", reopenedSynchronize,
+                queue.offer(reopenedSynchronize));
+    }
+
+    @Test
+    public void testSynchronizeEventsOfOtherPullRequestsAreQueued() {
+        WebHookEventQueue.Event first = createPullRequestEvent("synchronize", PULL_REQUEST_URL, "a");
+        WebHookEventQueue.Event second = createPullRequestEvent("synchronize", OTHER_PULL_REQUEST_URL, "a");
+
+        assertSame(first, queue.offer(first));
+        assertSame(second, queue.offer(second));
+        assertEquals(PULL_REQUEST_URL, first.getKey());
+        assertEquals(OTHER_PULL_REQUEST_URL, second.getKey());
+    }
+
+    @Test
+    public void testFullQueueRejectsNewEventsButStillCollapses() {
+        WebHookEventQueue.Event synchronize = createPullRequestEvent("synchronize", PULL_REQUEST_URL, "a");
+        assertSame(synchronize, queue.offer(synchronize));
+        for (int i = 1; i < MAX_PENDING_EVENTS; i++) {
+            WebHookEventQueue.Event event = new WebHookEventQueue.Event("push", "{}");
+            assertSame(event, queue.offer(event));
+        }
+
+        assertNull("There are too many events waiting",
+                queue.offer(new WebHookEventQueue.Event("push", "{}")));
+        assertSame(synchronize,
+                queue.offer(createPullRequestEvent("synchronize", PULL_REQUEST_URL, "b")));
+    }
+
+    @Test
+    public void testQueuesDoNotShareEvents() {
+        WebHookEventQueue.Event first = createPullRequestEvent("synchronize", PULL_REQUEST_URL, "a");
+        WebHookEventQueue.Event second = createPullRequestEvent("synchronize", PULL_REQUEST_URL, "b");
+        WebHookEventQueue otherQueue = new WebHookEventQueue(new File("other-webhook-queue"), MAX_PENDING_EVENTS);
+
+        assertSame(first, queue.offer(first));
+        assertSame("The event waiting in the other queue is not replaced", second, otherQueue.offer(second));
+        assertEquals(1, queue.getQueueDepth());
+        assertEquals(1, otherQueue.getQueueDepth());
+    }
+
+}
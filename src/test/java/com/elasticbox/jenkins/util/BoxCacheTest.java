@@ -0,0 +1,139 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.elasticbox.Client;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+public class BoxCacheTest {
+
+    private Client client;
+
+    @Before
+    public void setUp() {
+        // each test has its own endpoint, so the entries of the other tests never match
+        client = mock(Client.class);
+        when(client.getEndpointUrl()).thenReturn("https://" + UUID.randomUUID() + ".elasticbox.com");
+    }
+
+    private static JSONObject createBox(String boxId, boolean version) {
+        JSONObject box = new JSONObject();
+        box.put("id", boxId);
+        box.put("name", "box-" + boxId);
+        if (version) {
+            box.put("version", new JSONObject().element("number", 1));
+        } else {
+            box.put("version", JSONNull.getInstance());
+        }
+        return box;
+    }
+
+    @Test
+    public void testVersionIsCached() throws IOException {
+        when(client.getBox("version-1")).thenReturn(createBox("version-1", true));
+
+        assertEquals("version-1", BoxCache.getBox(client, "version-1").getString("id"));
+        assertEquals("version-1", BoxCache.getBox(client, "version-1").getString("id"));
+        verify(client, times(1)).getBox("version-1");
+    }
+
+    @Test
+    public void testDraftIsNeverCached() throws IOException {
+        when(client.getBox("draft")).thenReturn(createBox("draft", false));
+
+        BoxCache.getBox(client, "draft");
+        BoxCache.getBox(client, "draft");
+        verify(client, times(2)).getBox("draft");
+    }
+
+    @Test
+    public void testStackWithDraftIsNeverCached() throws IOException {
+        JSONArray stack = new JSONArray();
+        stack.add(createBox("version-1", true));
+        stack.add(createBox("draft", false));
+        when(client.getBoxStack("version-1")).thenReturn(stack);
+
+        BoxCache.getBoxStack(client, "version-1");
+        BoxCache.getBoxStack(client, "version-1");
+        verify(client, times(2)).getBoxStack("version-1");
+    }
+
+    @Test
+    public void testStackOfVersionsIsCached() throws IOException {
+        JSONArray stack = new JSONArray();
+        stack.add(createBox("version-1", true));
+        stack.add(createBox("version-2", true));
+        when(client.getBoxStack("version-1")).thenReturn(stack);
+
+        assertEquals(2, BoxCache.getBoxStack(client, "version-1").size());
+        assertEquals(2, BoxCache.getBoxStack(client, "version-1").size());
+        verify(client, times(1)).getBoxStack("version-1");
+    }
+
+    @Test
+    public void testCachedBoxIsCopy() throws IOException {
+        when(client.getBox("version-1")).thenReturn(createBox("version-1", true));
+
+        BoxCache.getBox(client, "version-1").put("name", "changed");
+        assertEquals("box-version-1", BoxCache.getBox(client, "version-1").getString("name"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws IOException {
+        int maxEntries = Integer.getInteger("elasticbox.jenkins.BoxCache.maxEntries", 1000);
+        for (int i = 0; i <= maxEntries; i++) {
+            String boxId = "version-" + i;
+            when(client.getBox(boxId)).thenReturn(createBox(boxId, true));
+        }
+
+        BoxCache.getBox(client, "version-0");
+        BoxCache.getBox(client, "version-1");
+        for (int i = 2; i < maxEntries; i++) {
+            BoxCache.getBox(client, "version-" + i);
+        }
+        // using the first entry makes the second one the least recently used
+        BoxCache.getBox(client, "version-0");
+        BoxCache.getBox(client, "version-" + maxEntries);
+
+        BoxCache.getBox(client, "version-0");
+        BoxCache.getBox(client, "version-1");
+        verify(client, times(1)).getBox("version-0");
+        verify(client, times(2)).getBox("version-1");
+    }
+
+    @Test
+    public void testVersionDetection() {
+        assertTrue(BoxCache.isVersion(createBox("version-1", true)));
+        assertFalse(BoxCache.isVersion(createBox("draft", false)));
+        assertFalse(BoxCache.isVersion(new JSONObject()));
+        assertFalse(BoxCache.isImmutable(new JSONArray()));
+    }
+
+}
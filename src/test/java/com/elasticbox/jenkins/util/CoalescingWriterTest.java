@@ -0,0 +1,68 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2015 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CoalescingWriterTest {
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    private final Runnable writeTask = new Runnable() {
+        public void run() {
+            writes.incrementAndGet();
+        }
+    };
+
+    @Test
+    public void testWritesRequestedWithinDelayAreCoalesced() throws InterruptedException {
+        CoalescingWriter writer = new CoalescingWriter(writeTask, 100);
+        for (int i = 0; i < 10; i++) {
+            writer.schedule();
+        }
+        Thread.sleep(500);
+
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    public void testWriteRequestedAfterWriteIsScheduledAgain() throws InterruptedException {
+        CoalescingWriter writer = new CoalescingWriter(writeTask, 50);
+        writer.schedule();
+        Thread.sleep(300);
+        writer.schedule();
+        Thread.sleep(300);
+
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    public void testFlushAllWritesOnlyPendingWrites() {
+        CoalescingWriter pendingWriter = new CoalescingWriter(writeTask, TimeUnit.HOURS.toMillis(1));
+        new CoalescingWriter(writeTask, TimeUnit.HOURS.toMillis(1));
+        pendingWriter.schedule();
+
+        CoalescingWriter.flushAll();
+        assertEquals(1, writes.get());
+
+        // the write scheduled before the flush has nothing left to write
+        CoalescingWriter.flushAll();
+        assertEquals(1, writes.get());
+    }
+
+}